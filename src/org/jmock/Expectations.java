@@ -114,6 +114,10 @@ public class Expectations implements ExpectationBuilder,
      */
     
     public ReceiverClause exactly(int count) {
+        return exactly((long)count);
+    }
+    
+    public ReceiverClause exactly(long count) {
         initialiseExpectationCapture(Cardinality.exactly(count));
         return currentBuilder;
     }
@@ -131,6 +135,10 @@ public class Expectations implements ExpectationBuilder,
     }
     
     public ReceiverClause atLeast(int count) {
+        return atLeast((long)count);
+    }
+    
+    public ReceiverClause atLeast(long count) {
         initialiseExpectationCapture(Cardinality.atLeast(count));
         return currentBuilder;
     }
@@ -140,11 +148,21 @@ public class Expectations implements ExpectationBuilder,
         return currentBuilder;
     }
     
+    public ReceiverClause between(long minCount, long maxCount) {
+        initialiseExpectationCapture(Cardinality.between(minCount, maxCount));
+        return currentBuilder;
+    }
+    
     public ReceiverClause atMost(int count) {
         initialiseExpectationCapture(Cardinality.atMost(count));
         return currentBuilder;
     }
     
+    public ReceiverClause atMost(long count) {
+        initialiseExpectationCapture(Cardinality.atMost(count));
+        return currentBuilder;
+    }
+    
     public MethodClause allowing(Matcher<?> mockObjectMatcher) {
         return atLeast(0).of(mockObjectMatcher);
     }
@@ -329,4 +347,16 @@ public class Expectations implements ExpectationBuilder,
             inSequence(sequence);
         }
     }
+    
+    /**
+     * Constrains the expectation to be invoked as a step of a partial order,
+     * for example:
+     * <pre>oneOf (mock).open(); inPartialOrder(order.step("open"));
+     *oneOf (mock).read(); inPartialOrder(order.step("read").after("open"));</pre>
+     * The steps that a step follows must have been added to the partial order
+     * by earlier expectations.
+     */
+    public void inPartialOrder(PartialOrder.Step step) {
+        currentBuilder().addInPartialOrderOrderingConstraint(step);
+    }
 }
@@ -8,9 +8,11 @@ import org.jmock.lib.CamelCaseNamingScheme;
 import org.jmock.lib.IdentityExpectationErrorTranslator;
 import org.jmock.lib.JavaReflectionImposteriser;
 import org.jmock.lib.concurrent.Synchroniser;
+import org.jmock.lib.history.FullInvocationHistory;
 
-import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -31,13 +33,15 @@ public class Mockery implements SelfDescribing {
     private ExpectationErrorTranslator expectationErrorTranslator = IdentityExpectationErrorTranslator.INSTANCE;
     private MockObjectNamingScheme namingScheme = CamelCaseNamingScheme.INSTANCE;
     private ThreadingPolicy threadingPolicy = new SingleThreadedPolicy();
+    private InvocationHistory invocationHistory = new FullInvocationHistory();
 
     private final Set<String> mockNames = new HashSet<String>();
     private final ReturnDefaultValueAction defaultAction = new ReturnDefaultValueAction(imposteriser);
-    private final List<Invocation> actualInvocations = new ArrayList<Invocation>();
     private final InvocationDispatcher dispatcher = new InvocationDispatcher();
+    private final ImposterPreparation imposterPreparation = new ImposterPreparation();
+    private final MethodKindCache methodKinds = new MethodKindCache();
 
-    private Error firstError = null;
+    private volatile Error firstError = null;
 
     /* 
      * Policies
@@ -106,10 +110,38 @@ public class Mockery implements SelfDescribing {
         this.threadingPolicy = threadingPolicy;
     }
     
+    /**
+     * Changes how much of the history of invocations the Mockery keeps to
+     * describe when a test fails.
+     * 
+     * By default, the Mockery keeps every invocation and its arguments until
+     * the Mockery itself is garbage collected.  Tests that make a great many
+     * invocations can plug in a history that keeps less of them.
+     * 
+     * @see org.jmock.lib.history
+     */
+    public void setInvocationHistory(InvocationHistory invocationHistory) {
+        this.invocationHistory = invocationHistory;
+    }
+    
     /*
      * API
      */
     
+    /**
+     * Prepares to mock the given types.
+     * 
+     * If the imposteriser is a {@link PreparingImposteriser}, it generates the
+     * proxy classes for the types concurrently on background threads, so that
+     * later calls to {@link #mock(Class)} only have to instantiate them.
+     * Otherwise this does nothing.
+     */
+    public void prepare(Class<?>... typesToMock) {
+        if (imposteriser instanceof PreparingImposteriser) {
+            imposterPreparation.prepare((PreparingImposteriser)imposteriser, typesToMock);
+        }
+    }
+    
     /**
      * Creates a mock object of type <var>typeToMock</var> and generates a name for it.
      */
@@ -127,12 +159,9 @@ public class Mockery implements SelfDescribing {
         
         final MockObject mock = new MockObject(typeToMock, name);
         mockNames.add(name);
+        imposterPreparation.awaitPreparationOf(typeToMock);
         
-        Invokable invokable =
-            threadingPolicy.synchroniseAccessTo(
-                new ProxiedObjectIdentity(
-                    new InvocationDiverter<CaptureControl>(
-                        CaptureControl.class, mock, mock)));
+        Invokable invokable = threadingPolicy.synchroniseAccessTo(mock);
         
         return imposteriser.imposterise(invokable, typeToMock, CaptureControl.class);
     }
@@ -150,6 +179,19 @@ public class Mockery implements SelfDescribing {
         return new NamedSequence(name);
     }
     
+    /** 
+     * Returns a new partial order that is used to constrain the order in which 
+     * expectations can occur.
+     * 
+     * @param name
+     *     The name of the partial order.
+     * @return
+     *     A new partial order with the given name.
+     */
+    public PartialOrder partialOrder(String name) {
+        return new NamedPartialOrder(name);
+    }
+    
     /** 
      * Returns a new state machine that is used to constrain the order in which 
      * expectations can occur.
@@ -201,6 +243,22 @@ public class Mockery implements SelfDescribing {
         }
 	}
     
+    /**
+     * Returns the number of expectations that have not been met.  Cheap enough
+     * to call periodically while the object under test is running.
+     */
+    public int unsatisfiedExpectationCount() {
+        return dispatcher.getUnsatisfiedCount();
+    }
+    
+    /**
+     * Returns the expectations that have not been met, in the order in which
+     * they were specified.
+     */
+    public List<Expectation> unsatisfiedExpectations() {
+        return dispatcher.getUnsatisfiedExpectations();
+    }
+    
     public void describeTo(Description description) {
         description.appendDescriptionOf(dispatcher);
         describeHistory(description);
@@ -213,13 +271,7 @@ public class Mockery implements SelfDescribing {
     
     private void describeHistory(Description description) {
         description.appendText("\nwhat happened before this:");
-        final List<Invocation> invocationsSoFar = new ArrayList<Invocation>(actualInvocations);
-        if (invocationsSoFar.isEmpty()) {
-            description.appendText(" nothing!");
-        }
-        else {
-            description.appendList("\n  ", "\n  ", "\n", invocationsSoFar);
-        }
+        description.appendDescriptionOf(invocationHistory);
     }
 
     private Object dispatch(Invocation invocation) throws Throwable {
@@ -229,7 +281,7 @@ public class Mockery implements SelfDescribing {
         
         try {
             Object result = dispatcher.dispatch(invocation);
-            actualInvocations.add(invocation);
+            invocationHistory.record(invocation);
             return result;
         }
         catch (ExpectationError e) {
@@ -238,7 +290,7 @@ public class Mockery implements SelfDescribing {
             throw firstError;
         }
         catch (Throwable t) {
-            actualInvocations.add(invocation);
+            invocationHistory.record(invocation);
             throw t;
         }
     }
@@ -253,9 +305,12 @@ public class Mockery implements SelfDescribing {
         return filledIn;
     }
 
-    private class MockObject implements Invokable, CaptureControl {
+    private class MockObject implements Invokable, CaptureControl, ConfinedDispatch {
         private Class<?> mockedType;
         private String name;
+        private Object capturingImposter = null;
+        private final LinkedList<ExpectationCapture> pendingCaptures = new LinkedList<ExpectationCapture>();
+        private ExpectationCapture lastCapture = null;
         
         public MockObject(Class<?> mockedType, String name) {
             this.name = name;
@@ -267,14 +322,77 @@ public class Mockery implements SelfDescribing {
             return name;
         }
         
+        /*
+         * Fakes the identity of the mock object and diverts CaptureControl calls
+         * in the same step as dispatching, instead of through a chain of Invokables.
+         */
         public Object invoke(Invocation invocation) throws Throwable {
-            return dispatch(invocation);
+            switch (methodKinds.kindOf(invocation.getInvokedMethod())) {
+            case HASH_CODE:
+                return System.identityHashCode(invocation.getInvokedObject());
+            case TO_STRING:
+                return name;
+            case EQUALS:
+                return invocation.getParameter(0) == invocation.getInvokedObject();
+            case FINALIZE:
+                return null;
+            case CAPTURE_CONTROL:
+                return captureExpectationTo((ExpectationCapture)invocation.getParameter(0));
+            default:
+                return dispatch(invocation);
+            }
+        }
+
+        public boolean isConfinedToMockObject(Invocation invocation) {
+            return methodKinds.kindOf(invocation.getInvokedMethod()) != MethodKind.MOCKED
+                || dispatcher.isConfinedToMockObject(invocation);
+        }
+        
+        public boolean isStubbedOnly(Invocation invocation) {
+            final MethodKind kind = methodKinds.kindOf(invocation.getInvokedMethod());
+            return kind == MethodKind.MOCKED
+                 ? dispatcher.isStubbedOnly(invocation)
+                 : kind != MethodKind.CAPTURE_CONTROL;
         }
 
         public Object captureExpectationTo(ExpectationCapture capture) {
-            return imposteriser.imposterise(
-                new ObjectMethodExpectationBouncer(new InvocationToExpectationTranslator(capture, defaultAction)), 
-                mockedType);
+            if (capturingImposter == null) {
+                capturingImposter = newCapturingImposter(new Invokable() {
+                    public Object invoke(Invocation invocation) throws Throwable {
+                        nextPendingCapture().createExpectationFrom(invocation);
+                        return defaultAction.invoke(invocation);
+                    }
+                });
+            }
+            removeBuiltCaptures();
+            pendingCaptures.addLast(capture);
+            return capturingImposter;
+        }
+        
+        /*
+         * The most recent capture is invoked first, because an expectation of this
+         * mock object can be defined while evaluating the arguments of another.
+         * Captures of the whole mock object, as in ignoring(mock), are never invoked
+         * and are dropped once their expectations have been built.
+         */
+        private ExpectationCapture nextPendingCapture() {
+            removeBuiltCaptures();
+            if (!pendingCaptures.isEmpty()) {
+                lastCapture = pendingCaptures.removeLast();
+            }
+            return lastCapture;
+        }
+        
+        private void removeBuiltCaptures() {
+            for (Iterator<ExpectationCapture> i = pendingCaptures.iterator(); i.hasNext();) {
+                if (i.next().hasBeenBuilt()) {
+                    i.remove();
+                }
+            }
+        }
+        
+        private Object newCapturingImposter(Invokable translator) {
+            return imposteriser.imposterise(new ObjectMethodExpectationBouncer(translator, methodKinds), mockedType);
         }
     }
 
@@ -0,0 +1,36 @@
+package org.jmock;
+
+import org.jmock.internal.InvocationExpectation;
+
+/**
+ * A partial order of expectations; invocations can be constrained to occur
+ * only after the invocations of other, named steps of the order.
+ * 
+ * Unlike a {@link Sequence}, a step can follow more than one other step, and
+ * steps that do not depend on each other can occur in any order.
+ */
+public interface PartialOrder {
+    /**
+     * @param name
+     *     The name of the step, unique within this partial order.
+     * @return
+     *     A step that can occur at any time.
+     */
+    Step step(String name);
+    
+    interface Step {
+        /**
+         * @return a step that can only occur after all of the named steps are
+         *         satisfied.
+         */
+        Step after(String... predecessors);
+        
+        /**
+         * @return a step that can only occur after any one of the named steps
+         *         is satisfied.
+         */
+        Step afterAnyOf(String... predecessors);
+        
+        void constrainAsStep(InvocationExpectation expectation);
+    }
+}
@@ -4,9 +4,10 @@ package org.jmock.api;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.AbstractList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.RandomAccess;
 
 import org.hamcrest.Description;
 import org.hamcrest.SelfDescribing;
@@ -24,19 +25,7 @@ public class Invocation implements SelfDescribing {
     private final Object invokedObject;
     private final Method invokedMethod;
     private final Object[] parameterValues;
-
-    // A kludge but there doesn't seem to be a way to find this out through the reflection API.
-    private static final Map<Class<?>, Class<?>> BOX_TYPES = new HashMap<Class<?>, Class<?>>() {{
-        put(boolean.class, Boolean.class);
-        put(byte.class, Byte.class);
-        put(char.class, Character.class);
-        put(short.class, Short.class);
-        put(int.class, Integer.class);
-        put(long.class, Long.class);
-        put(float.class, Float.class);
-        put(double.class, Double.class);
-    }};
-
+    private List<Object> parameterList = null;
     
     public Invocation(Object invoked, Method method, Object... parameterValues) {
         this.invokedObject = invoked;
@@ -92,13 +81,27 @@ public class Invocation implements SelfDescribing {
         return parameterValues[i];
     }
 
+    /**
+     * Returns the parameter values as an unmodifiable list that is backed by
+     * the invocation, so the values are not copied.
+     */
+    public List<Object> getParameters() {
+        if (parameterList == null) {
+            parameterList = new ParameterList();
+        }
+        return parameterList;
+    }
+    
+    /**
+     * Returns a copy of the parameter values.
+     */
     public Object[] getParametersAsArray() {
         return parameterValues.clone();
     }
 
     public Object applyTo(Object target) throws Throwable {
         try {
-            return invokedMethod.invoke(target, getParametersAsArray());
+            return invokedMethod.invoke(target, parameterValues);
         }
         catch (InvocationTargetException ex) {
             throw ex.getTargetException();
@@ -130,7 +133,20 @@ public class Invocation implements SelfDescribing {
     }
 
     private boolean isBoxedType(Class<?> primitiveType, Class<?> referenceType) {
-        return BOX_TYPES.get(primitiveType) == referenceType;
+        return boxTypeOf(primitiveType) == referenceType;
+    }
+
+    // A kludge but there doesn't seem to be a way to find this out through the reflection API.
+    private static Class<?> boxTypeOf(Class<?> primitiveType) {
+        if (primitiveType == int.class) return Integer.class;
+        if (primitiveType == boolean.class) return Boolean.class;
+        if (primitiveType == long.class) return Long.class;
+        if (primitiveType == double.class) return Double.class;
+        if (primitiveType == char.class) return Character.class;
+        if (primitiveType == byte.class) return Byte.class;
+        if (primitiveType == short.class) return Short.class;
+        if (primitiveType == float.class) return Float.class;
+        return null;
     }
 
     private void failIfReturnTypeIsNotNull(final Object result) {
@@ -152,4 +168,16 @@ public class Invocation implements SelfDescribing {
             "tried to return a " + valueType.getName() +
             " from a method that can only return a " + returnType.getName());
     }
+    
+    private class ParameterList extends AbstractList<Object> implements RandomAccess {
+        @Override
+        public Object get(int index) {
+            return parameterValues[index];
+        }
+        
+        @Override
+        public int size() {
+            return parameterValues.length;
+        }
+    }
 }
@@ -0,0 +1,18 @@
+package org.jmock.api;
+
+import org.hamcrest.SelfDescribing;
+
+/**
+ * Records the invocations that a {@link org.jmock.Mockery} has dispatched to
+ * its expectations, so that they can be described when a test fails.
+ * 
+ * An InvocationHistory decides how many of the invocations, and so how many of
+ * their arguments, are kept in memory.  It describes itself as a list of the
+ * invocations it has kept, one per line, and states what it has left out.
+ * 
+ * Invocations may be recorded and described by different threads if the
+ * Mockery is used with a multi-threaded {@link ThreadingPolicy}.
+ */
+public interface InvocationHistory extends SelfDescribing {
+    void record(Invocation invocation);
+}
@@ -0,0 +1,24 @@
+package org.jmock.api;
+
+/**
+ * An {@link Imposteriser} that can prepare to imposterise types before it is
+ * asked to, for example by generating proxy classes on a background thread
+ * while the test runner is still starting up.
+ * 
+ * @see org.jmock.Mockery#prepare(Class...)
+ */
+public interface PreparingImposteriser extends Imposteriser {
+    /**
+     * Prepares to create imposters for the given types, so that later calls to
+     * {@link #imposterise(Invokable, Class, Class...)} with the same types need
+     * only instantiate them.  This may be called from any thread.
+     * 
+     * @param mockedType
+     *    The static type of the imposters that will be created.
+     * @param ancilliaryTypes
+     *    The other types of the imposters that will be created.
+     * @throws IllegalArgumentException
+     *    If the types cannot be imposterised.
+     */
+    void prepare(Class<?> mockedType, Class<?>... ancilliaryTypes);
+}
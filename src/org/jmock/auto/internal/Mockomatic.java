@@ -1,6 +1,7 @@
 package org.jmock.auto.internal;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.jmock.Mockery;
@@ -23,6 +24,8 @@ public class Mockomatic {
     }
 
     public void fillIn(Object object, final List<Field> knownFields) {
+        prepareAutoMocks(knownFields);
+        
         for (Field field : knownFields) {
             if (field.isAnnotationPresent(Mock.class)) {
                 autoMock(object, field);
@@ -33,6 +36,16 @@ public class Mockomatic {
         }
     }
 
+    private void prepareAutoMocks(List<Field> knownFields) {
+        final List<Class<?>> typesToMock = new ArrayList<Class<?>>();
+        for (Field field : knownFields) {
+            if (field.isAnnotationPresent(Mock.class)) {
+                typesToMock.add(field.getType());
+            }
+        }
+        mockery.prepare(typesToMock.toArray(new Class<?>[typesToMock.size()]));
+    }
+
     private void autoMock(Object object, Field field) {
         setAutoField(field, object, 
                      mockery.mock(field.getType(), field.getName()),
@@ -6,46 +6,75 @@ import org.hamcrest.SelfDescribing;
 /**
  * The acceptable range of times an expectation may be invoked.
  * 
+ * Counts are longs.  For compatibility with earlier versions, in which
+ * counts were ints, a maximum of <code>Integer.MAX_VALUE</code> given as
+ * an int means {@link #UNLIMITED}.
+ * 
  * @author smgf
  * @author nat
  */
 public class Cardinality implements SelfDescribing {
+    public static final long UNLIMITED = Long.MAX_VALUE;
     public static final Cardinality ALLOWING = atLeast(0);
     
-    private final int required;
-    private final int maximum;
+    private final long required;
+    private final long maximum;
     
     public Cardinality(final int required, final int maximum) {
+        this((long)required, maximum == Integer.MAX_VALUE ? UNLIMITED : (long)maximum);
+    }
+    
+    public Cardinality(final long required, final long maximum) {
         this.required = required;
         this.maximum = maximum;
     }
     
     public static Cardinality exactly(int count) {
+        return exactly((long)count);
+    }
+    
+    public static Cardinality exactly(long count) {
         return between(count, count);
     }
 
     public static Cardinality atLeast(int required) {
-        return between(required, Integer.MAX_VALUE);
+        return atLeast((long)required);
+    }
+    
+    public static Cardinality atLeast(long required) {
+        return between(required, UNLIMITED);
     }
 
     public static Cardinality between(int required, int maximum) {
         return new Cardinality(required, maximum);
     }
+    
+    public static Cardinality between(long required, long maximum) {
+        return new Cardinality(required, maximum);
+    }
 
     public static Cardinality atMost(int maximum) {
         return between(0, maximum);
     }
+    
+    public static Cardinality atMost(long maximum) {
+        return between(0, maximum);
+    }
 
-    public boolean isSatisfied(int invocationsSoFar) {
+    public boolean isSatisfied(long invocationsSoFar) {
         return required <= invocationsSoFar;
     }
 
-    public boolean allowsMoreInvocations(int invocationCount) {
+    public boolean allowsMoreInvocations(long invocationCount) {
         return invocationCount < maximum;
     }
+    
+    public boolean allowsUnlimitedInvocations() {
+        return maximum == UNLIMITED;
+    }
 
     public void describeTo(Description description) {
-        if (required == 0 && maximum == Integer.MAX_VALUE) {
+        if (required == 0 && maximum == UNLIMITED) {
             description.appendText("allowed");
         }
         else {
@@ -61,7 +90,7 @@ public class Cardinality implements SelfDescribing {
                 description.appendText("exactly ");
                 description.appendText(Formatting.times(required));
             }
-            else if (maximum == Integer.MAX_VALUE) {
+            else if (maximum == UNLIMITED) {
                 description.appendText("at least ");
                 description.appendText(Formatting.times(required));
             }
@@ -70,7 +99,7 @@ public class Cardinality implements SelfDescribing {
                 description.appendText(Formatting.times(maximum));
             }
             else {
-                description.appendText(Integer.toString(required));
+                description.appendText(Formatting.count(required));
                 description.appendText(" to ");
                 description.appendText(Formatting.times(maximum));
             }
@@ -0,0 +1,26 @@
+package org.jmock.internal;
+
+import org.jmock.api.Invocation;
+
+/**
+ * Implemented by the Invokables of mock objects that can tell a
+ * {@link org.jmock.api.ThreadingPolicy} whether an invocation can be
+ * dispatched while only the invoked mock object is locked, or without
+ * locking at all.
+ */
+public interface ConfinedDispatch {
+    /**
+     * @return true if dispatching the invocation can only read or change the
+     *         state of expectations of the invoked mock object, so it can run
+     *         at the same time as invocations of other mock objects.
+     */
+    boolean isConfinedToMockObject(Invocation invocation);
+
+    /**
+     * @return true if dispatching the invocation can only count invocations
+     *         of expectations that allow any number of invocations and whose
+     *         actions keep no state, so it can run at the same time as other
+     *         invocations of the same mock object.
+     */
+    boolean isStubbedOnly(Invocation invocation);
+}
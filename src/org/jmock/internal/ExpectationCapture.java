@@ -5,4 +5,10 @@ import org.jmock.api.Invocation;
 
 public interface ExpectationCapture {
     void createExpectationFrom(Invocation invocation);
+    
+    /**
+     * @return true once the expectation has been built, after which no
+     *         more invocations will be captured to it.
+     */
+    boolean hasBeenBuilt();
 }
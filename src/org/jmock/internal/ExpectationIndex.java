@@ -0,0 +1,184 @@
+package org.jmock.internal;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jmock.api.Expectation;
+import org.jmock.api.Invocation;
+
+/**
+ * Finds the first expectation, in the order they were added, that matches
+ * an invocation without asking every expectation in turn.
+ *
+ * Expectations that are known to match only invocations of a single method
+ * of a single mock object are bucketed by that mock object and method. All
+ * other expectations are kept in a list that is consulted for every
+ * invocation.  Candidates from the bucket and from that list are merged by
+ * the order in which they were added, so the first matching expectation
+ * is the same as if every expectation had been asked.
+ */
+class ExpectationIndex {
+    private final Map<Object, Map<Method, Candidates>> byMockObject = new IdentityHashMap<Object, Map<Method, Candidates>>();
+    private final Candidates unindexed = new Candidates();
+    private int addedCount = 0;
+
+    public void add(Expectation expectation) {
+        candidatesFor(expectation).add(addedCount++, expectation);
+    }
+
+    public Expectation firstMatch(Invocation invocation) {
+        final Candidates indexed = bucketFor(invocation.getInvokedObject(), invocation.getInvokedMethod());
+        if (indexed == null) {
+            return unindexed.firstMatch(invocation);
+        }
+
+        int i = indexed.firstUnexhausted();
+        int j = unindexed.firstUnexhausted();
+        while (i < indexed.size() || j < unindexed.size()) {
+            final Expectation candidate;
+            if (j == unindexed.size() || (i < indexed.size() && indexed.position(i) < unindexed.position(j))) {
+                candidate = indexed.expectation(i++);
+            }
+            else {
+                candidate = unindexed.expectation(j++);
+            }
+
+            if (candidate.matches(invocation)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if every expectation that could match the invocation is
+     *         confined to the invoked mock object.
+     */
+    public boolean isConfinedToMockObject(Invocation invocation) {
+        final Candidates indexed = bucketFor(invocation.getInvokedObject(), invocation.getInvokedMethod());
+        return indexed != null && indexed.isConfined() && unindexed.size() == 0;
+    }
+
+    /**
+     * @return true if every expectation that could match the invocation is
+     *         a stub.
+     */
+    public boolean isStubbedOnly(Invocation invocation) {
+        final Candidates indexed = bucketFor(invocation.getInvokedObject(), invocation.getInvokedMethod());
+        return indexed != null && indexed.isStubbedOnly() && unindexed.size() == 0;
+    }
+
+    private Candidates candidatesFor(Expectation expectation) {
+        if (expectation instanceof InvocationExpectation) {
+            final InvocationExpectation invocationExpectation = (InvocationExpectation)expectation;
+            final Object mockObject = invocationExpectation.getExpectedMockObject();
+            final Method method = invocationExpectation.getExpectedMethod();
+
+            if (mockObject != null && method != null) {
+                return bucketCreatingIfAbsent(mockObject, method);
+            }
+        }
+        return unindexed;
+    }
+
+    private static boolean isConfinedToMockObject(Expectation expectation) {
+        return expectation instanceof InvocationExpectation
+            && ((InvocationExpectation)expectation).isConfinedToMockObject();
+    }
+
+    private static boolean isExhausted(Expectation expectation) {
+        return expectation instanceof InvocationExpectation
+            && !expectation.allowsMoreInvocations();
+    }
+
+    private static boolean isStub(Expectation expectation) {
+        return expectation instanceof InvocationExpectation
+            && ((InvocationExpectation)expectation).isStub();
+    }
+
+    private Candidates bucketFor(Object mockObject, Method method) {
+        final Map<Method, Candidates> byMethod = byMockObject.get(mockObject);
+        return byMethod == null ? null : byMethod.get(method);
+    }
+
+    private Candidates bucketCreatingIfAbsent(Object mockObject, Method method) {
+        Map<Method, Candidates> byMethod = byMockObject.get(mockObject);
+        if (byMethod == null) {
+            byMethod = new HashMap<Method, Candidates>();
+            byMockObject.put(mockObject, byMethod);
+        }
+
+        Candidates bucket = byMethod.get(method);
+        if (bucket == null) {
+            bucket = new Candidates();
+            byMethod.put(method, bucket);
+        }
+        return bucket;
+    }
+
+    private static class Candidates {
+        private final List<Expectation> expectations = new ArrayList<Expectation>();
+        private int[] positions = new int[4];
+        private boolean confined = true;
+        private boolean stubbedOnly = true;
+        private int firstUnexhausted = 0;
+
+        public void add(int position, Expectation expectation) {
+            if (expectations.size() == positions.length) {
+                int[] grown = new int[positions.length * 2];
+                System.arraycopy(positions, 0, grown, 0, positions.length);
+                positions = grown;
+            }
+            positions[expectations.size()] = position;
+            expectations.add(expectation);
+            confined = confined && isConfinedToMockObject(expectation);
+            stubbedOnly = stubbedOnly && isStub(expectation);
+        }
+
+        public boolean isConfined() {
+            return confined;
+        }
+
+        public boolean isStubbedOnly() {
+            return stubbedOnly;
+        }
+
+        /*
+         * An InvocationExpectation that allows no more invocations never will
+         * again, so expectations that have been exhausted in the order they were
+         * added, as the steps of a recorded protocol are, are skipped for good.
+         */
+        public int firstUnexhausted() {
+            while (firstUnexhausted < expectations.size() && isExhausted(expectations.get(firstUnexhausted))) {
+                firstUnexhausted++;
+            }
+            return firstUnexhausted;
+        }
+
+        public int size() {
+            return expectations.size();
+        }
+
+        public int position(int i) {
+            return positions[i];
+        }
+
+        public Expectation expectation(int i) {
+            return expectations.get(i);
+        }
+
+        public Expectation firstMatch(Invocation invocation) {
+            for (int i = firstUnexhausted(); i < expectations.size(); i++) {
+                final Expectation expectation = expectations.get(i);
+                if (expectation.matches(invocation)) {
+                    return expectation;
+                }
+            }
+            return null;
+        }
+    }
+}
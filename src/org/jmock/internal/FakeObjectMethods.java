@@ -1,17 +1,20 @@
 package org.jmock.internal;
 
-import java.lang.reflect.Method;
-import java.util.Arrays;
-
 import org.jmock.api.Invocation;
 import org.jmock.api.Invokable;
 
 
 public abstract class FakeObjectMethods implements Invokable {
     private final Invokable next;
+    private final MethodKindCache methodKinds;
 
     public FakeObjectMethods(Invokable next) {
+        this(next, new MethodKindCache());
+    }
+
+    public FakeObjectMethods(Invokable next, MethodKindCache methodKinds) {
         this.next = next;
+        this.methodKinds = methodKinds;
     }
 
     @Override
@@ -20,21 +23,17 @@ public abstract class FakeObjectMethods implements Invokable {
     }
 
     public Object invoke(Invocation invocation) throws Throwable {
-        Method method = invocation.getInvokedMethod();
-        if (isMethod(method, int.class, "hashCode")) {
+        switch (methodKinds.kindOf(invocation.getInvokedMethod())) {
+        case HASH_CODE:
             return fakeHashCode(invocation.getInvokedObject());
-        }
-        else if (isMethod(method, String.class, "toString")) {
+        case TO_STRING:
             return fakeToString(invocation.getInvokedObject());
-        }
-        else if (isMethod(method, boolean.class, "equals", Object.class)) {
+        case EQUALS:
             return fakeEquals(invocation.getInvokedObject(), invocation.getParameter(0));
-        }
-        else if (isMethod(method, void.class, "finalize")) {
+        case FINALIZE:
             fakeFinalize(invocation.getInvokedObject());
             return null;
-        }
-        else {
+        default:
             return next.invoke(invocation);
         }
     }
@@ -47,10 +46,4 @@ public abstract class FakeObjectMethods implements Invokable {
 
     protected abstract void fakeFinalize(Object invokedObject);
 
-    private boolean isMethod(Method method, Class<?> returnType, String name, Class<?>... parameterTypes) {
-        return method.getReturnType().equals(returnType)
-            && method.getName().equals(name)
-            && Arrays.equals(method.getParameterTypes(), parameterTypes);
-    }
-
 }
@@ -2,8 +2,30 @@ package org.jmock.internal;
 
 public class Formatting {
 
-    public static String times(int i) {
-        return i + " " + (i == 1 ? "time" : "times");
+    public static String times(long i) {
+        return count(i) + " " + (i == 1 ? "time" : "times");
+    }
+
+    public static String invocations(long i) {
+        return count(i) + " " + (i == 1 ? "invocation" : "invocations");
+    }
+
+    /**
+     * Formats a count with its digits grouped in threes, so that the large counts
+     * reached by long-running tests can be read at a glance.  Groups are always
+     * separated by commas, whatever the default locale.
+     */
+    public static String count(long i) {
+        final String digits = Long.toString(i);
+        final int firstDigit = i < 0 ? 1 : 0;
+        final StringBuilder formatted = new StringBuilder(digits.length() + digits.length() / 3);
+        for (int d = 0; d < digits.length(); d++) {
+            if (d > firstDigit && (digits.length() - d) % 3 == 0) {
+                formatted.append(',');
+            }
+            formatted.append(digits.charAt(d));
+        }
+        return formatted.toString();
     }
 
 }
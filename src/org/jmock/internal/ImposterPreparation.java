@@ -0,0 +1,104 @@
+package org.jmock.internal;
+
+import static java.lang.Thread.currentThread;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jmock.api.PreparingImposteriser;
+
+/**
+ * Prepares a {@link PreparingImposteriser} to mock types on a pool of
+ * background threads that is shared by all Mockeries.
+ *
+ * A Mockery waits for the preparation of a type to finish before mocking it,
+ * so that the imposteriser does not generate the same proxy class twice.
+ * Preparations are started and waited for by the thread that uses the Mockery.
+ */
+public class ImposterPreparation {
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(),
+        new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "jMock imposter preparation");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    private final Map<Class<?>, Preparation> preparations = new HashMap<Class<?>, Preparation>();
+
+    public void prepare(PreparingImposteriser imposteriser, Class<?>... typesToMock) {
+        final ClassLoader contextClassLoader = currentThread().getContextClassLoader();
+
+        for (Class<?> typeToMock : typesToMock) {
+            if (!preparations.containsKey(typeToMock) && imposteriser.canImposterise(typeToMock)) {
+                final Preparation preparation = new Preparation(imposteriser, typeToMock, contextClassLoader);
+                preparations.put(typeToMock, preparation);
+                executor.execute(preparation);
+            }
+        }
+    }
+
+    /**
+     * Waits until the preparation of a type, if any, has finished.  If the
+     * preparation has not started, it is cancelled and the imposteriser will
+     * generate the proxy class when it is asked to.
+     */
+    public void awaitPreparationOf(Class<?> typeToMock) {
+        final Preparation preparation = preparations.remove(typeToMock);
+        if (preparation == null || preparation.cancelIfNotStarted()) {
+            return;
+        }
+
+        try {
+            preparation.get();
+        }
+        catch (InterruptedException e) {
+            currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            // The imposteriser will report the failure when the type is mocked
+        }
+    }
+
+    private static class Preparation extends FutureTask<Object> {
+        private final AtomicBoolean started = new AtomicBoolean(false);
+
+        public Preparation(final PreparingImposteriser imposteriser, final Class<?> typeToMock, final ClassLoader contextClassLoader) {
+            super(new Runnable() {
+                public void run() {
+                    // Imposterisers choose class loaders for proxy classes by the
+                    // context class loader of the thread that creates mock objects
+                    final Thread thread = currentThread();
+                    final ClassLoader originalContextClassLoader = thread.getContextClassLoader();
+                    thread.setContextClassLoader(contextClassLoader);
+                    try {
+                        imposteriser.prepare(typeToMock, CaptureControl.class);
+                        imposteriser.prepare(typeToMock);
+                    }
+                    finally {
+                        thread.setContextClassLoader(originalContextClassLoader);
+                    }
+                }
+            }, null);
+        }
+
+        @Override
+        public void run() {
+            if (started.compareAndSet(false, true)) {
+                super.run();
+            }
+        }
+
+        public boolean cancelIfNotStarted() {
+            return started.compareAndSet(false, true);
+        }
+    }
+}
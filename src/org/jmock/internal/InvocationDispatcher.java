@@ -8,11 +8,25 @@ import org.jmock.api.Invocation;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class InvocationDispatcher implements ExpectationCollector, SelfDescribing {
 	private List<Expectation> expectations = new ArrayList<Expectation>();
 	private List<StateMachine> stateMachines = new ArrayList<StateMachine>();
+	private ExpectationIndex index = new ExpectationIndex();
+	private final ConcurrentMap<Expectation, Integer> unsatisfied = new ConcurrentHashMap<Expectation, Integer>();
+	private final Map<Expectation, Integer> unobserved = new LinkedHashMap<Expectation, Integer>();
+	private final SatisfactionListener satisfactionListener = new SatisfactionListener() {
+	    public void expectationSatisfied(Expectation expectation) {
+	        unsatisfied.remove(expectation);
+	    }
+	};
     
     public StateMachine newStateMachine(String name) {
         StateMachine stateMachine = new StateMachine(name);
@@ -22,6 +36,17 @@ public class InvocationDispatcher implements ExpectationCollector, SelfDescribin
     
 	public void add(Expectation expectation) {
 		expectations.add(expectation);
+		index.add(expectation);
+		
+		if (expectation instanceof InvocationExpectation) {
+		    if (!expectation.isSatisfied()) {
+		        unsatisfied.put(expectation, expectations.size() - 1);
+		    }
+		    ((InvocationExpectation)expectation).addSatisfactionListener(satisfactionListener);
+		}
+		else {
+		    unobserved.put(expectation, expectations.size() - 1);
+		}
 	}
 	
     public void describeTo(Description description) {
@@ -65,22 +90,68 @@ public class InvocationDispatcher implements ExpectationCollector, SelfDescribin
         }
     }
     
-
+    /*
+     * An InvocationExpectation tells the dispatcher when it becomes satisfied,
+     * so only the unsatisfied ones are remembered.  Other expectations are
+     * asked every time.
+     */
     public boolean isSatisfied() {
-		for (Expectation expectation : expectations) {
-		    if (! expectation.isSatisfied()) {
-                return false;
+        return getUnsatisfiedCount() == 0;
+    }
+    
+    /**
+     * @return the number of expectations that are not satisfied.
+     */
+    public int getUnsatisfiedCount() {
+        int count = unsatisfied.size();
+        for (Expectation expectation : unobserved.keySet()) {
+            if (!expectation.isSatisfied()) {
+                count++;
             }
         }
-        return true;
-	}
-	
-	public Object dispatch(Invocation invocation) throws Throwable {
-		for (Expectation expectation : expectations) {
-		    if (expectation.matches(invocation)) {
-		        return expectation.invoke(invocation);
+        return count;
+    }
+    
+    /**
+     * @return the expectations that are not satisfied, in the order in which
+     *         they were added.
+     */
+    public List<Expectation> getUnsatisfiedExpectations() {
+        final SortedMap<Integer, Expectation> byPosition = new TreeMap<Integer, Expectation>();
+        for (Map.Entry<Expectation, Integer> entry : unsatisfied.entrySet()) {
+            byPosition.put(entry.getValue(), entry.getKey());
+        }
+        for (Map.Entry<Expectation, Integer> entry : unobserved.entrySet()) {
+            if (!entry.getKey().isSatisfied()) {
+                byPosition.put(entry.getValue(), entry.getKey());
             }
         }
+        return new ArrayList<Expectation>(byPosition.values());
+    }
+	
+    /**
+     * @return true if every expectation that could match the invocation is
+     *         confined to the invoked mock object.
+     * @see InvocationExpectation#isConfinedToMockObject()
+     */
+    public boolean isConfinedToMockObject(Invocation invocation) {
+        return index.isConfinedToMockObject(invocation);
+    }
+    
+    /**
+     * @return true if every expectation that could match the invocation is
+     *         a stub.
+     * @see InvocationExpectation#isStub()
+     */
+    public boolean isStubbedOnly(Invocation invocation) {
+        return index.isStubbedOnly(invocation);
+    }
+    
+	public Object dispatch(Invocation invocation) throws Throwable {
+	    final Expectation expectation = index.firstMatch(invocation);
+	    if (expectation != null) {
+	        return expectation.invoke(invocation);
+	    }
         
         throw ExpectationError.unexpected("unexpected invocation", invocation);
 	}
@@ -7,11 +7,14 @@ import org.jmock.api.Action;
 import org.jmock.api.Expectation;
 import org.jmock.api.Invocation;
 import org.jmock.internal.matcher.MethodMatcher;
+import org.jmock.internal.matcher.MockObjectMatcher;
+import org.jmock.lib.action.ReturnValueAction;
 import org.jmock.lib.action.VoidAction;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /** 
  * An expectation of zero or more matching invocations.
@@ -31,7 +34,10 @@ public class InvocationExpectation implements Expectation {
     private List<OrderingConstraint> orderingConstraints = new ArrayList<OrderingConstraint>();
     private List<SideEffect> sideEffects = new ArrayList<SideEffect>();
     
-	private int invocationCount = 0;
+	private final StripedCounter invocationCount = new StripedCounter();
+	private CompatibleResultType compatibleResultType = null;
+	private List<SatisfactionListener> satisfactionListeners = new ArrayList<SatisfactionListener>();
+	private final AtomicBoolean satisfactionReported = new AtomicBoolean(false);
 	
     public void setCardinality(Cardinality cardinality) {
         this.cardinality = cardinality;
@@ -73,6 +79,58 @@ public class InvocationExpectation implements Expectation {
         this.actionIsDefault = true;
     }
     
+    /**
+     * Tells a listener when an invocation makes this expectation satisfied.
+     */
+    public void addSatisfactionListener(SatisfactionListener satisfactionListener) {
+        satisfactionListeners.add(satisfactionListener);
+    }
+    
+    /**
+     * @return the mock object that this expectation is restricted to, or null if
+     *         it may match invocations of more than one object.
+     */
+    public Object getExpectedMockObject() {
+        return objectMatcher instanceof MockObjectMatcher
+             ? ((MockObjectMatcher)objectMatcher).getMockObject()
+             : null;
+    }
+    
+    /**
+     * @return the method that this expectation is restricted to, or null if
+     *         it may match invocations of more than one method.
+     */
+    public Method getExpectedMethod() {
+        return methodMatcher instanceof MethodMatcher
+             ? ((MethodMatcher)methodMatcher).getExpectedMethod()
+             : null;
+    }
+    
+    /**
+     * @return true if this expectation only matches invocations of one method of
+     *         one mock object and does not read or change any other state when
+     *         it is matched and invoked.
+     */
+    public boolean isConfinedToMockObject() {
+        return getExpectedMockObject() != null && getExpectedMethod() != null
+            && orderingConstraints.isEmpty() && sideEffects.isEmpty();
+    }
+    
+    /**
+     * @return true if this expectation is confined to its mock object, allows
+     *         any number of invocations and returns the same kind of result
+     *         every time, so that several threads can invoke it at once.
+     */
+    public boolean isStub() {
+        return isConfinedToMockObject() && cardinality.allowsUnlimitedInvocations() && hasStatelessAction();
+    }
+    
+    private boolean hasStatelessAction() {
+        return action instanceof ReturnValueAction
+            || action instanceof VoidAction
+            || action instanceof ReturnDefaultValueAction;
+    }
+    
     public void describeTo(Description description) {
         if (! isSatisfied()) {
             description.appendText("! ");
@@ -84,7 +142,7 @@ public class InvocationExpectation implements Expectation {
     public void describeMismatch(Invocation invocation, Description description) {
         describeExpectation(description);
 
-        final Object[] parameters = invocation.getParametersAsArray();
+        final List<Object> parameters = invocation.getParameters();
         if (methodMatcher.matches(invocation.getInvokedMethod()) &&
             parametersMatcher.isCompatibleWith(parameters))
         {
@@ -101,6 +159,7 @@ public class InvocationExpectation implements Expectation {
     private void describeMethod(Description description) {
         cardinality.describeTo(description);
         description.appendText(", ");
+        final long invocationCount = this.invocationCount.get();
         if (invocationCount == 0) {
             description.appendText("never invoked");
         }
@@ -136,18 +195,19 @@ public class InvocationExpectation implements Expectation {
     }
 
     public boolean isSatisfied() {
-        return cardinality.isSatisfied(invocationCount);
+        return cardinality.isSatisfied(invocationCount.get());
     }
     
     public boolean allowsMoreInvocations() {
-        return cardinality.allowsMoreInvocations(invocationCount);
+        return cardinality.allowsUnlimitedInvocations()
+            || cardinality.allowsMoreInvocations(invocationCount.get());
     }
     
     public boolean matches(Invocation invocation) {
 		return allowsMoreInvocations()
 			&& objectMatcher.matches(invocation.getInvokedObject())
 			&& methodMatcher.matches(invocation.getInvokedMethod())
-			&& parametersMatcher.matches(invocation.getParametersAsArray())
+			&& parametersMatcher.matches(invocation.getParameters())
             && isInCorrectOrder();
         
 	}
@@ -160,25 +220,75 @@ public class InvocationExpectation implements Expectation {
     }
 	
     public Object invoke(Invocation invocation) throws Throwable {
-		invocationCount++;
+		invocationCount.increment();
+		reportSatisfaction();
 		performSideEffects();
 		final Object result = action.invoke(invocation);
-        invocation.checkReturnTypeCompatibility(result);
+        checkReturnTypeCompatibility(invocation, result);
         return result;
 	}
 
+    /*
+     * An expectation usually returns results of the same type from the same method,
+     * so it remembers the last result type that was compatible with the return type.
+     */
+    private void checkReturnTypeCompatibility(Invocation invocation, Object result) {
+        if (result != null) {
+            final CompatibleResultType lastCompatible = compatibleResultType;
+            final Class<?> returnType = invocation.getInvokedMethod().getReturnType();
+            final Class<?> resultType = result.getClass();
+            
+            if (lastCompatible == null || !lastCompatible.isFor(returnType, resultType)) {
+                invocation.checkReturnTypeCompatibility(result);
+                compatibleResultType = new CompatibleResultType(returnType, resultType);
+            }
+        }
+        else {
+            invocation.checkReturnTypeCompatibility(result);
+        }
+    }
+
+    /*
+     * The thread that makes the last of the required invocations sees the count
+     * reach the required number, but so may others that invoke the expectation
+     * at the same time, so the listeners are only told by the first to notice.
+     */
+    private void reportSatisfaction() {
+        if (!satisfactionListeners.isEmpty() && !satisfactionReported.get()
+            && isSatisfied() && satisfactionReported.compareAndSet(false, true))
+        {
+            for (SatisfactionListener satisfactionListener : satisfactionListeners) {
+                satisfactionListener.expectationSatisfied(this);
+            }
+        }
+    }
+
     private void performSideEffects() {
         for (SideEffect sideEffect : sideEffects) {
             sideEffect.perform();
         }
     }
     
-    private static class AnyParametersMatcher extends IsAnything<Object[]> implements ParametersMatcher {
+    private static class CompatibleResultType {
+        private final Class<?> returnType;
+        private final Class<?> resultType;
+        
+        public CompatibleResultType(Class<?> returnType, Class<?> resultType) {
+            this.returnType = returnType;
+            this.resultType = resultType;
+        }
+        
+        public boolean isFor(Class<?> returnType, Class<?> resultType) {
+            return this.returnType == returnType && this.resultType == resultType;
+        }
+    }
+    
+    private static class AnyParametersMatcher extends IsAnything<List<?>> implements ParametersMatcher {
         public AnyParametersMatcher() {
             super("(<any parameters>)");
         }
 
-        public boolean isCompatibleWith(Object[] parameters) {
+        public boolean isCompatibleWith(List<?> parameters) {
             return true;
         }
     };
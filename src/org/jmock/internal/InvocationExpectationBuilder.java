@@ -6,6 +6,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.hamcrest.Matcher;
+import org.jmock.PartialOrder;
 import org.jmock.Sequence;
 import org.jmock.api.Action;
 import org.jmock.api.Expectation;
@@ -25,6 +26,7 @@ public class InvocationExpectationBuilder
     
     private boolean isFullySpecified = false;
     private boolean needsDefaultAction = true;
+    private boolean hasBeenBuilt = false;
     private List<Matcher<?>> capturedParameterMatchers = new ArrayList<Matcher<?>>();
     
     public Expectation toExpectation(Action defaultAction) {
@@ -32,9 +34,14 @@ public class InvocationExpectationBuilder
             expectation.setDefaultAction(defaultAction);
         }
         
+        hasBeenBuilt = true;
         return expectation;
     }
     
+    public boolean hasBeenBuilt() {
+        return hasBeenBuilt;
+    }
+    
     public void setCardinality(Cardinality cardinality) {
         expectation.setCardinality(cardinality);
     }
@@ -51,6 +58,10 @@ public class InvocationExpectationBuilder
         sequence.constrainAsNextInSequence(expectation);
     }
     
+    public void addInPartialOrderOrderingConstraint(PartialOrder.Step step) {
+        step.constrainAsStep(expectation);
+    }
+    
     public void setAction(Action action) {
         expectation.setAction(action);
         needsDefaultAction = false;
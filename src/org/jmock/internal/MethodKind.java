@@ -0,0 +1,49 @@
+package org.jmock.internal;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * The part a method plays when it is invoked on a mock object.
+ *
+ * Methods of the Object class are recognised by their signatures, so that they
+ * are classified the same way when they are redeclared by a mocked type.
+ */
+public enum MethodKind {
+    HASH_CODE,
+    TO_STRING,
+    EQUALS,
+    FINALIZE,
+    CAPTURE_CONTROL,
+    MOCKED;
+
+    private static final Class<?>[] NO_PARAMETERS = new Class<?>[0];
+    private static final Class<?>[] OBJECT_PARAMETER = new Class<?>[] { Object.class };
+
+    public static MethodKind of(Method method) {
+        if (isMethod(method, int.class, "hashCode", NO_PARAMETERS)) {
+            return HASH_CODE;
+        }
+        else if (isMethod(method, String.class, "toString", NO_PARAMETERS)) {
+            return TO_STRING;
+        }
+        else if (isMethod(method, boolean.class, "equals", OBJECT_PARAMETER)) {
+            return EQUALS;
+        }
+        else if (isMethod(method, void.class, "finalize", NO_PARAMETERS)) {
+            return FINALIZE;
+        }
+        else if (method.getDeclaringClass() == CaptureControl.class) {
+            return CAPTURE_CONTROL;
+        }
+        else {
+            return MOCKED;
+        }
+    }
+
+    private static boolean isMethod(Method method, Class<?> returnType, String name, Class<?>[] parameterTypes) {
+        return method.getReturnType().equals(returnType)
+            && method.getName().equals(name)
+            && Arrays.equals(method.getParameterTypes(), parameterTypes);
+    }
+}
@@ -0,0 +1,31 @@
+package org.jmock.internal;
+
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the {@link MethodKind} of each method it has been asked about, so
+ * that a method is only classified the first time it is invoked.
+ *
+ * Imposters pass the same Method object to their Invokable every time a method
+ * is invoked, so methods are looked up by identity.  The cache is copied when
+ * a method is added, so that looking up a method does not lock or allocate and
+ * the cache can be shared between threads.
+ */
+public class MethodKindCache {
+    private volatile Map<Method, MethodKind> kinds = new IdentityHashMap<Method, MethodKind>();
+
+    public MethodKind kindOf(Method method) {
+        final MethodKind kind = kinds.get(method);
+        return kind != null ? kind : add(method);
+    }
+
+    private synchronized MethodKind add(Method method) {
+        final MethodKind kind = MethodKind.of(method);
+        final Map<Method, MethodKind> newKinds = new IdentityHashMap<Method, MethodKind>(kinds);
+        newKinds.put(method, kind);
+        kinds = newKinds;
+        return kind;
+    }
+}
@@ -0,0 +1,167 @@
+package org.jmock.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hamcrest.Description;
+import org.jmock.PartialOrder;
+import org.jmock.api.Expectation;
+
+/**
+ * A partial order of expectations.
+ * 
+ * Each step of the order is an expectation and the steps that it must follow,
+ * which are looked up by name when the step is added.  Steps can only follow
+ * steps that have already been added, so the order has no cycles.
+ * 
+ * An expectation never becomes unsatisfied once it is satisfied, so each step
+ * counts how many of the steps it follows are known to be satisfied, and only
+ * asks the first of the others when it is next asked whether it can occur.
+ * Checking whether a step that follows all of its predecessors can occur
+ * therefore asks each predecessor at most once after it has been satisfied.
+ * A step that follows any of its predecessors does not ask them at all:
+ * they tell it when the first of them becomes satisfied.
+ */
+public class NamedPartialOrder implements PartialOrder {
+    private final String name;
+    private final Map<String, Node> nodes = new HashMap<String, Node>();
+    
+    public NamedPartialOrder(String name) {
+        this.name = name;
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+    
+    public Step step(String stepName) {
+        return new NamedStep(stepName, new String[0], false);
+    }
+    
+    private void add(String stepName, String[] predecessorNames, boolean afterAny, InvocationExpectation expectation) {
+        if (nodes.containsKey(stepName)) {
+            throw new IllegalArgumentException("partial order " + name + " already has a step called " + stepName);
+        }
+        
+        final Node[] predecessors = new Node[predecessorNames.length];
+        for (int i = 0; i < predecessorNames.length; i++) {
+            predecessors[i] = nodes.get(predecessorNames[i]);
+            if (predecessors[i] == null) {
+                throw new IllegalArgumentException("partial order " + name + " has no step called " + predecessorNames[i]);
+            }
+        }
+        
+        final Node node = new Node(stepName, expectation, predecessors, afterAny);
+        nodes.put(stepName, node);
+        expectation.addOrderingConstraint(new InPartialOrderOrderingConstraint(node));
+    }
+    
+    private class NamedStep implements Step {
+        private final String stepName;
+        private final String[] predecessorNames;
+        private final boolean afterAny;
+        
+        public NamedStep(String stepName, String[] predecessorNames, boolean afterAny) {
+            this.stepName = stepName;
+            this.predecessorNames = predecessorNames;
+            this.afterAny = afterAny;
+        }
+        
+        public Step after(String... predecessors) {
+            return new NamedStep(stepName, checkNotEmpty(predecessors), false);
+        }
+        
+        public Step afterAnyOf(String... predecessors) {
+            return new NamedStep(stepName, checkNotEmpty(predecessors), true);
+        }
+        
+        private String[] checkNotEmpty(String[] predecessors) {
+            if (predecessors.length == 0) {
+                throw new IllegalArgumentException("step " + stepName + " of partial order " + name + " must follow at least one step");
+            }
+            return predecessors;
+        }
+        
+        public void constrainAsStep(InvocationExpectation expectation) {
+            add(stepName, predecessorNames, afterAny, expectation);
+        }
+    }
+    
+    private static class Node implements SatisfactionListener {
+        public final String name;
+        private final InvocationExpectation expectation;
+        private final Node[] predecessors;
+        private final boolean afterAny;
+        private int satisfiedPredecessorCount = 0;
+        
+        public Node(String name, InvocationExpectation expectation, Node[] predecessors, boolean afterAny) {
+            this.name = name;
+            this.expectation = expectation;
+            this.predecessors = predecessors;
+            this.afterAny = afterAny;
+            
+            if (afterAny) {
+                for (Node predecessor : predecessors) {
+                    if (predecessor.isSatisfied()) {
+                        satisfiedPredecessorCount = 1;
+                    }
+                    else {
+                        predecessor.expectation.addSatisfactionListener(this);
+                    }
+                }
+            }
+        }
+        
+        public boolean isSatisfied() {
+            return expectation.isSatisfied();
+        }
+        
+        public boolean allowsInvocationNow() {
+            return afterAny ? satisfiedPredecessorCount > 0 : areAllPredecessorsSatisfied();
+        }
+        
+        public void expectationSatisfied(Expectation predecessor) {
+            satisfiedPredecessorCount = 1;
+        }
+        
+        private boolean areAllPredecessorsSatisfied() {
+            while (satisfiedPredecessorCount < predecessors.length
+                   && predecessors[satisfiedPredecessorCount].isSatisfied())
+            {
+                satisfiedPredecessorCount++;
+            }
+            return satisfiedPredecessorCount == predecessors.length;
+        }
+        
+        public void describePredecessorsTo(Description description) {
+            if (predecessors.length > 0) {
+                description.appendText(" after ");
+                for (int i = 0; i < predecessors.length; i++) {
+                    if (i > 0) {
+                        description.appendText(i == predecessors.length - 1 ? (afterAny ? " or " : " and ") : ", ");
+                    }
+                    description.appendText(predecessors[i].name);
+                }
+            }
+        }
+    }
+    
+    private class InPartialOrderOrderingConstraint implements OrderingConstraint {
+        private final Node node;
+        
+        public InPartialOrderOrderingConstraint(Node node) {
+            this.node = node;
+        }
+        
+        public boolean allowsInvocationNow() {
+            return node.allowsInvocationNow();
+        }
+        
+        public void describeTo(Description description) {
+            description.appendText("as step ").appendText(node.name)
+                       .appendText(" of partial order ").appendText(name);
+            node.describePredecessorsTo(description);
+        }
+    }
+}
@@ -17,6 +17,7 @@ import org.jmock.api.Expectation;
 public class NamedSequence implements Sequence {
     private final String name;
     private List<Expectation> elements = new ArrayList<Expectation>();
+    private int satisfiedPrefixLength = 0;
     
     public NamedSequence(String name) {
         this.name = name;
@@ -33,11 +34,17 @@ public class NamedSequence implements Sequence {
         expectation.addOrderingConstraint(new InSequenceOrderingConstraint(this, index));
     }
     
+    /*
+     * An expectation never becomes unsatisfied once it is satisfied, so the
+     * length of the satisfied prefix of the sequence only grows.  It is advanced
+     * past newly satisfied expectations when the sequence is next asked, which
+     * asks each expectation at most once after it has been satisfied.
+     */
     private boolean isSatisfiedToIndex(int index) {
-        for (int i = 0; i < index; i++) {
-            if (!elements.get(i).isSatisfied()) return false;
+        while (satisfiedPrefixLength < index && elements.get(satisfiedPrefixLength).isSatisfied()) {
+            satisfiedPrefixLength++;
         }
-        return true;
+        return satisfiedPrefixLength >= index;
     }
     
     private static class InSequenceOrderingConstraint implements OrderingConstraint {
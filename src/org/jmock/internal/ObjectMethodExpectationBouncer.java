@@ -7,6 +7,10 @@ public class ObjectMethodExpectationBouncer extends FakeObjectMethods {
         super(next);
     }
 
+    public ObjectMethodExpectationBouncer(Invokable next, MethodKindCache methodKinds) {
+        super(next, methodKinds);
+    }
+
     @Override
     protected boolean fakeEquals(Object invokedObject, Object other) {
         throw cannotDefineExpectation();
@@ -0,0 +1,11 @@
+package org.jmock.internal;
+
+/**
+ * A StatePredicate that tells listeners when the states it depends on change,
+ * so that threads waiting for it to become active do not have to check it
+ * after every invocation.
+ */
+public interface ObservableStatePredicate extends StatePredicate {
+    void addStateChangeListener(StateChangeListener listener);
+    void removeStateChangeListener(StateChangeListener listener);
+}
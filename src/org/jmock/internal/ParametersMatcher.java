@@ -1,12 +1,18 @@
 package org.jmock.internal;
 
+import java.util.List;
+
 import org.hamcrest.Matcher;
 
-public interface ParametersMatcher extends Matcher<Object[]> {
+/**
+ * Matches the parameters of an invocation, as returned by
+ * {@link org.jmock.api.Invocation#getParameters()}.
+ */
+public interface ParametersMatcher extends Matcher<List<?>> {
     /**
      * Is this matcher likely to be relevant to the given parameters?
      * @param parameters The parameters to be matched
      * @return true iff the parameters may be relevant.
      */
-    boolean isCompatibleWith(Object[] parameters); 
+    boolean isCompatibleWith(List<?> parameters); 
 }
@@ -7,6 +7,10 @@ public class ProxiedObjectIdentity extends FakeObjectMethods {
     public ProxiedObjectIdentity(Invokable next) {
         super(next);
     }
+
+    public ProxiedObjectIdentity(Invokable next, MethodKindCache methodKinds) {
+        super(next, methodKinds);
+    }
     
     @Override
     protected void fakeFinalize(Object invokedObject) {
@@ -0,0 +1,148 @@
+package org.jmock.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A cache of values derived from classes and class loaders, such as
+ * generated proxy classes.
+ *
+ * A key is an ordered list of objects that are compared by identity.  The
+ * cache refers to the objects in a key weakly and to values softly, so it does
+ * not stop classes or class loaders from being garbage collected and unloaded.
+ * Entries are removed once any object in their key has been collected.
+ *
+ * @param <V> the type of cached value
+ */
+public class ReflectionCache<V> {
+    private static final Object NULL_PART = new Object();
+
+    private final ReferenceQueue<Object> collectedParts = new ReferenceQueue<Object>();
+    private final Map<Key, Reference<V>> entries = new HashMap<Key, Reference<V>>();
+
+    /**
+     * @return the value cached for the given key, or null if there is none.
+     */
+    public synchronized V get(Object... key) {
+        expungeCollectedEntries();
+
+        final Reference<V> value = entries.get(new LookupKey(key));
+        return value == null ? null : value.get();
+    }
+
+    public synchronized void put(V value, Object... key) {
+        expungeCollectedEntries();
+
+        entries.put(new StoredKey(key, collectedParts), new SoftReference<V>(value));
+    }
+
+    public synchronized int size() {
+        expungeCollectedEntries();
+
+        return entries.size();
+    }
+
+    private void expungeCollectedEntries() {
+        Reference<?> collected;
+        while ((collected = collectedParts.poll()) != null) {
+            entries.remove(((KeyPart)collected).owner);
+        }
+    }
+
+    private static Object partFor(Object o) {
+        return o == null ? NULL_PART : o;
+    }
+
+    private static int hashOf(Object[] parts) {
+        int hash = 1;
+        for (Object part : parts) {
+            hash = 31*hash + System.identityHashCode(partFor(part));
+        }
+        return hash;
+    }
+
+    private static abstract class Key {
+        private final int hash;
+
+        protected Key(int hash) {
+            this.hash = hash;
+        }
+
+        protected abstract int size();
+        protected abstract Object part(int i);
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            final Key other = (Key)o;
+            if (hash != other.hash || size() != other.size()) return false;
+
+            for (int i = 0; i < size(); i++) {
+                final Object part = part(i);
+                if (part == null || part != other.part(i)) return false;
+            }
+            return true;
+        }
+    }
+
+    private static class LookupKey extends Key {
+        private final Object[] parts;
+
+        public LookupKey(Object[] parts) {
+            super(hashOf(parts));
+            this.parts = parts;
+        }
+
+        @Override
+        protected int size() {
+            return parts.length;
+        }
+
+        @Override
+        protected Object part(int i) {
+            return partFor(parts[i]);
+        }
+    }
+
+    private static class StoredKey extends Key {
+        private final KeyPart[] parts;
+
+        public StoredKey(Object[] parts, ReferenceQueue<Object> collectedParts) {
+            super(hashOf(parts));
+            this.parts = new KeyPart[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                this.parts[i] = new KeyPart(partFor(parts[i]), this, collectedParts);
+            }
+        }
+
+        @Override
+        protected int size() {
+            return parts.length;
+        }
+
+        @Override
+        protected Object part(int i) {
+            return parts[i].get();
+        }
+    }
+
+    private static class KeyPart extends WeakReference<Object> {
+        public final StoredKey owner;
+
+        public KeyPart(Object part, StoredKey owner, ReferenceQueue<Object> collectedParts) {
+            super(part, collectedParts);
+            this.owner = owner;
+        }
+    }
+}
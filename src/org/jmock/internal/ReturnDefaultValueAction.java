@@ -11,6 +11,8 @@ import org.jmock.lib.JavaReflectionImposteriser;
 import java.beans.beancontext.BeanContextServicesSupport;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 
 /**
@@ -19,13 +21,17 @@ import java.util.*;
  * <li>Returns nothing from void methods.</li>
  * <li>Returns zero or false results for primitive types.</li>
  * <li>Returns zero length instances for arrays and strings.</li>
- * <li>Returns empty instances for collections and maps types in {@link java.util}.</li>
+ * <li>Returns new empty instances for collections and maps types in {@link java.util}.</li>
  * <li></li>Returns imposterised <a
  * href="http://www.c2.com/cgi/wiki?NullObject">Null Objects</a> for
  * types that can be imposterised by the action's {@link Imposteriser}.</li>
  * <li>Otherwise returns <code>null</code>.</li>
  * The default value can be overridden for specific types.
  * 
+ * The action works out how to make the default value of a type the first time
+ * it is asked for one.  Zero length arrays and Null Objects are made once per
+ * type and returned every time.
+ * 
  * @author Nat Pryce
  * @author Steve Freeman 2013
  */
@@ -36,7 +42,10 @@ public class ReturnDefaultValueAction implements Action {
       TreeMap.class,
       BeanContextServicesSupport.class
     };
+    private final static DefaultValueFactory NULL_VALUE = new SameValue(null);
     private final Map<Class<?>, Object> resultValuesByType;
+    private final ConcurrentMap<Class<?>, DefaultValueFactory> factoriesByType = 
+        new ConcurrentHashMap<Class<?>, DefaultValueFactory>();
     private Imposteriser imposteriser;
 
     public ReturnDefaultValueAction(Imposteriser imposteriser, Map<Class<?>, Object> typeToResultValue) {
@@ -54,6 +63,7 @@ public class ReturnDefaultValueAction implements Action {
     
     public void setImposteriser(Imposteriser newImposteriser) {
         this.imposteriser = newImposteriser;
+        factoriesByType.clear();
     }
     
     public void describeTo(Description description) {
@@ -62,35 +72,45 @@ public class ReturnDefaultValueAction implements Action {
 
     public void addResult(Class<?> resultType, Object resultValue) {
         resultValuesByType.put(resultType, resultValue);
+        factoriesByType.clear();
     }
 
     public Object invoke(Invocation invocation) throws Throwable {
       final Class<?> returnType = invocation.getInvokedMethod().getReturnType();
 
+      DefaultValueFactory factory = factoriesByType.get(returnType);
+      if (factory == null) {
+          factory = factoryFor(returnType);
+          factoriesByType.put(returnType, factory);
+      }
+      return factory.newDefaultValue();
+    }
+
+    private DefaultValueFactory factoryFor(Class<?> returnType) {
       if (resultValuesByType.containsKey(returnType)) {
-          return resultValuesByType.get(returnType);
+          return new SameValue(resultValuesByType.get(returnType));
       }
       if (returnType.isArray()) {
-          return Array.newInstance(returnType.getComponentType(), 0);
+          return new SameValue(Array.newInstance(returnType.getComponentType(), 0));
       }
       if (isCollectionOrMap(returnType)) {
-        final Object instance = collectionOrMapInstanceFor(returnType);
-        if (instance != null) return instance;
+        final Class<?> instanceType = collectionOrMapTypeFor(returnType);
+        if (instanceType != null) return new NewInstance(instanceType);
       }
       if (imposteriser.canImposterise(returnType)) {
-          return imposteriser.imposterise(this, returnType);
+          return new SameValue(imposteriser.imposterise(this, returnType));
       }
-      return null;
+      return NULL_VALUE;
     }
 
-    private Object collectionOrMapInstanceFor(Class<?> returnType) throws Throwable {
-      return returnType.isInterface() ? instanceForCollectionType(returnType) : returnType.newInstance();
+    private Class<?> collectionOrMapTypeFor(Class<?> returnType) {
+      return returnType.isInterface() ? implementationOfCollectionType(returnType) : returnType;
     }
 
-    private Object instanceForCollectionType(Class<?> type) throws Throwable {
+    private Class<?> implementationOfCollectionType(Class<?> type) {
       for (Class<?> collectionType : COLLECTION_MAP_TYPES) {
         if (type.isAssignableFrom(collectionType)) {
-          return collectionType.newInstance();
+          return collectionType;
         }
       }
       return null;
@@ -124,4 +144,32 @@ public class ReturnDefaultValueAction implements Action {
       result.put(Object.class, new Object());
       return result;
     }
+
+    private interface DefaultValueFactory {
+        Object newDefaultValue() throws Throwable;
+    }
+
+    private static class SameValue implements DefaultValueFactory {
+        private final Object value;
+
+        public SameValue(Object value) {
+            this.value = value;
+        }
+
+        public Object newDefaultValue() {
+            return value;
+        }
+    }
+
+    private static class NewInstance implements DefaultValueFactory {
+        private final Class<?> type;
+
+        public NewInstance(Class<?> type) {
+            this.type = type;
+        }
+
+        public Object newDefaultValue() throws Throwable {
+            return type.newInstance();
+        }
+    }
 }
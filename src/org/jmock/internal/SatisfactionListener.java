@@ -0,0 +1,10 @@
+package org.jmock.internal;
+
+import org.jmock.api.Expectation;
+
+/**
+ * Told when an expectation that was not satisfied becomes satisfied.
+ */
+public interface SatisfactionListener {
+    void expectationSatisfied(Expectation expectation);
+}
@@ -1,12 +1,17 @@
 package org.jmock.internal;
 
+import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.List;
 import static java.lang.Thread.currentThread;
 
 
 public class SearchingClassLoader extends ClassLoader {
+    private static final ReflectionCache<ClassLoader> combinedLoaders = new ReflectionCache<ClassLoader>();
+    
     private final ClassLoader nextToSearch;
     
     public SearchingClassLoader(ClassLoader parent, ClassLoader nextToSearch) {
@@ -18,7 +23,25 @@ public class SearchingClassLoader extends ClassLoader {
         return combine(Arrays.asList(parentLoaders));
     }
     
+    /**
+     * Returns a class loader that searches the given loaders in order.  The same 
+     * loaders in the same order always result in the same loader, so that classes
+     * generated into it, such as dynamic proxy classes, can be reused.
+     */
     public static ClassLoader combine(List<ClassLoader> parentLoaders) {
+        final Object[] key = parentLoaders.toArray();
+        
+        synchronized (combinedLoaders) {
+            ClassLoader loader = combinedLoaders.get(key);
+            if (loader == null) {
+                loader = newCombinedLoader(parentLoaders);
+                combinedLoaders.put(loader, key);
+            }
+            return loader;
+        }
+    }
+    
+    private static ClassLoader newCombinedLoader(List<ClassLoader> parentLoaders) {
         ClassLoader loader = parentLoaders.get(parentLoaders.size()-1);
         
         for (int i = parentLoaders.size()-2; i >= 0; i--) {
@@ -71,4 +94,24 @@ public class SearchingClassLoader extends ClassLoader {
             return super.findClass(name); // will throw ClassNotFoundException
         }
     }
+    
+    @Override
+    protected URL findResource(String name) {
+        if (nextToSearch != null) {
+            return nextToSearch.getResource(name);
+        }
+        else {
+            return super.findResource(name); // will return null
+        }
+    }
+    
+    @Override
+    protected Enumeration<URL> findResources(String name) throws IOException {
+        if (nextToSearch != null) {
+            return nextToSearch.getResources(name);
+        }
+        else {
+            return super.findResources(name); // will return no resources
+        }
+    }
 }
@@ -0,0 +1,8 @@
+package org.jmock.internal;
+
+/**
+ * Told when a {@link StateMachine} changes state.
+ */
+public interface StateChangeListener {
+    void stateChanged(StateMachine stateMachine);
+}
@@ -1,12 +1,32 @@
 package org.jmock.internal;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.hamcrest.Description;
 import org.hamcrest.StringDescription;
 import org.jmock.States;
 
+/**
+ * A state machine whose states are named by strings.
+ * 
+ * Each state name is given an integer id the first time it is used, and the
+ * State and StatePredicate for that name are created once and returned every
+ * time they are asked for.  The current state is held as the id of the state
+ * in an atomic variable, so that checking whether a state is active is a
+ * single integer comparison and concurrent state changes are not lost.
+ */
 public class StateMachine implements States {
+    private static final int NO_STATE = -1;
+    
     private final String name;
-    private String currentState = null;
+    private final ConcurrentMap<String, NamedState> statesByName = new ConcurrentHashMap<String, NamedState>();
+    private volatile NamedState[] statesById = new NamedState[0];
+    private final AtomicInteger currentStateId = new AtomicInteger(NO_STATE);
+    private final List<StateChangeListener> listeners = new CopyOnWriteArrayList<StateChangeListener>();
     
     public StateMachine(String name) {
         this.name = name;
@@ -23,39 +43,119 @@ public class StateMachine implements States {
     }
     
     public void become(String nextState) {
-        currentState = nextState;
+        changeState(nextState == null ? NO_STATE : stateNamed(nextState).id);
     }
 
     public State is(final String state) {
-        return new State() {
-            public void activate() {
-                currentState = state;
-            }
-
-            public boolean isActive() {
-                return state.equals(currentState);
-            }
-
-            public void describeTo(Description description) {
-                description.appendText(name).appendText(" is ").appendText(state);
-            }
-        };
+        return stateNamed(state);
     }
     
     public StatePredicate isNot(final String state) {
-        return new StatePredicate() {
-            public boolean isActive() {
-                return !state.equals(currentState);
-            }
-
-            public void describeTo(Description description) {
-                description.appendText(name).appendText(" is not ").appendText(state);
+        return stateNamed(state).negation;
+    }
+    
+    /**
+     * Tells the listener whenever this state machine enters a state other than
+     * its current state.  The listener is told in the thread that changed the
+     * state.
+     */
+    public void addStateChangeListener(StateChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeStateChangeListener(StateChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    private NamedState stateNamed(String stateName) {
+        final NamedState state = statesByName.get(stateName);
+        return state != null ? state : intern(stateName);
+    }
+    
+    private synchronized NamedState intern(String stateName) {
+        final NamedState existingState = statesByName.get(stateName);
+        if (existingState != null) {
+            return existingState;
+        }
+        
+        final NamedState[] newStatesById = new NamedState[statesById.length + 1];
+        System.arraycopy(statesById, 0, newStatesById, 0, statesById.length);
+        final NamedState state = new NamedState(statesById.length, stateName);
+        newStatesById[state.id] = state;
+        
+        statesById = newStatesById;
+        statesByName.put(stateName, state);
+        return state;
+    }
+    
+    private void changeState(int nextStateId) {
+        final int previousStateId = currentStateId.getAndSet(nextStateId);
+        
+        if (previousStateId != nextStateId && !listeners.isEmpty()) {
+            for (StateChangeListener listener : listeners) {
+                listener.stateChanged(this);
             }
-        };
+        }
     }
     
     public void describeTo(Description description) {
+        final int stateId = currentStateId.get();
         description.appendText(name)
-                   .appendText(currentState == null ? " has no current state" : (" is " + currentState));
+                   .appendText(stateId == NO_STATE ? " has no current state" : (" is " + statesById[stateId].name));
+    }
+    
+    private class NamedState implements State, ObservableStatePredicate {
+        public final int id;
+        public final String name;
+        public final ObservableStatePredicate negation = new NotInState(this);
+        
+        public NamedState(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+        
+        public void activate() {
+            changeState(id);
+        }
+
+        public boolean isActive() {
+            return currentStateId.get() == id;
+        }
+        
+        public void addStateChangeListener(StateChangeListener listener) {
+            StateMachine.this.addStateChangeListener(listener);
+        }
+        
+        public void removeStateChangeListener(StateChangeListener listener) {
+            StateMachine.this.removeStateChangeListener(listener);
+        }
+
+        public void describeTo(Description description) {
+            description.appendText(StateMachine.this.name).appendText(" is ").appendText(name);
+        }
+    }
+    
+    private class NotInState implements ObservableStatePredicate {
+        private final NamedState state;
+        
+        public NotInState(NamedState state) {
+            this.state = state;
+        }
+
+        public boolean isActive() {
+            return currentStateId.get() != state.id;
+        }
+        
+        public void addStateChangeListener(StateChangeListener listener) {
+            StateMachine.this.addStateChangeListener(listener);
+        }
+        
+        public void removeStateChangeListener(StateChangeListener listener) {
+            StateMachine.this.removeStateChangeListener(listener);
+        }
+
+        public void describeTo(Description description) {
+            description.appendText(StateMachine.this.name).appendText(" is not ").appendText(state.name);
+        }
     }
 }
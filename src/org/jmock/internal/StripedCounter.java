@@ -0,0 +1,66 @@
+package org.jmock.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A 64-bit counter that many threads can increment at once without
+ * contending for the same memory.
+ *
+ * The counter starts as a single atomic variable.  The first time two threads
+ * try to increment it at the same time it adds a stripe of counts, one per
+ * processor, and from then on each thread increments the count of the stripe
+ * chosen by its id.  Counts in the stripe are spaced a cache line apart.  The
+ * value of the counter is the sum of all the counts, so counters that are
+ * only incremented by one thread at a time take no more memory or time than
+ * an AtomicLong.
+ */
+public class StripedCounter {
+    private static final int SPACING = 8; // longs in a 64-byte cache line
+    private static final int STRIPE_COUNT = stripeCount(Runtime.getRuntime().availableProcessors());
+    
+    private final AtomicLong base = new AtomicLong(0);
+    private volatile AtomicLongArray stripe = null;
+    
+    public void increment() {
+        AtomicLongArray stripe = this.stripe;
+        if (stripe == null) {
+            final long count = base.get();
+            if (base.compareAndSet(count, count + 1)) {
+                return;
+            }
+            stripe = addStripe();
+        }
+        stripe.incrementAndGet(indexFor(Thread.currentThread()));
+    }
+    
+    public long get() {
+        long sum = base.get();
+        final AtomicLongArray stripe = this.stripe;
+        if (stripe != null) {
+            for (int i = 0; i < STRIPE_COUNT; i++) {
+                sum += stripe.get(i * SPACING);
+            }
+        }
+        return sum;
+    }
+    
+    private synchronized AtomicLongArray addStripe() {
+        if (stripe == null) {
+            stripe = new AtomicLongArray(STRIPE_COUNT * SPACING);
+        }
+        return stripe;
+    }
+    
+    private static int indexFor(Thread thread) {
+        return ((int)thread.getId() & (STRIPE_COUNT - 1)) * SPACING;
+    }
+    
+    private static int stripeCount(int processorCount) {
+        int stripeCount = 1;
+        while (stripeCount < processorCount && stripeCount < 64) {
+            stripeCount <<= 1;
+        }
+        return stripeCount;
+    }
+}
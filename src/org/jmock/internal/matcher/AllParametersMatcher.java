@@ -4,13 +4,20 @@ import static java.util.Arrays.asList;
 
 import java.util.List;
 
+import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
-import org.hamcrest.TypeSafeDiagnosingMatcher;
 import org.hamcrest.core.IsEqual;
 import org.jmock.internal.ParametersMatcher;
 
-public class AllParametersMatcher extends TypeSafeDiagnosingMatcher<Object[]>  implements ParametersMatcher {
+/**
+ * Matches each parameter of an invocation with its own matcher.
+ * 
+ * Matching is done for every candidate expectation of every invocation, so it
+ * does not build any description.  The reasons for a mismatch are only worked
+ * out when the mismatch is described.
+ */
+public class AllParametersMatcher extends BaseMatcher<List<?>> implements ParametersMatcher {
     private final Matcher<Object>[] elementMatchers;
 
     public AllParametersMatcher(Object[] expectedValues) {
@@ -22,37 +29,58 @@ public class AllParametersMatcher extends TypeSafeDiagnosingMatcher<Object[]>  i
         this.elementMatchers = parameterMatchers.toArray(new Matcher[0]);
     }
 
-    public boolean isCompatibleWith(Object[] parameters) {
-        return elementMatchers.length == parameters.length;
+    public boolean isCompatibleWith(List<?> parameters) {
+        return elementMatchers.length == parameters.size();
+    }
+
+    public boolean matches(Object item) {
+        if (!(item instanceof List<?>)) {
+            return false;
+        }
+        
+        final List<?> parameters = (List<?>)item;
+        if (elementMatchers.length != parameters.size()) {
+            return false;
+        }
+        for (int i = 0; i < elementMatchers.length; i++) {
+            if (!elementMatchers[i].matches(parameters.get(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
-    public boolean matchesSafely(Object[] parameters, Description mismatch) {
-        return matchesNumberOfParameters(parameters, mismatch)
-            && matchesParameters(parameters, mismatch);
+    public void describeMismatch(Object item, Description mismatch) {
+        if (!(item instanceof List<?>)) {
+            super.describeMismatch(item, mismatch);
+            return;
+        }
+        
+        final List<?> parameters = (List<?>)item;
+        if (matchesNumberOfParameters(parameters, mismatch)) {
+            describeParameterMismatches(parameters, mismatch);
+        }
     }
 
-    private boolean matchesNumberOfParameters(Object[] parameters, Description mismatch) {
-        if (elementMatchers.length != parameters.length) {
+    private boolean matchesNumberOfParameters(List<?> parameters, Description mismatch) {
+        if (elementMatchers.length != parameters.size()) {
             mismatch.appendText("wrong number of parameters: ")
-                    .appendValue(parameters);
+                    .appendValueList("[", ", ", "]", parameters);
             return false;
         }
         return true;
     }
 
-    private boolean matchesParameters(Object[] parameters, Description mismatch) {
-        boolean result = true;
-        for (int i = 0; i < parameters.length; i++) {
-            result &= matchesParameter(parameters[i], elementMatchers[i], mismatch, i);
+    private void describeParameterMismatches(List<?> parameters, Description mismatch) {
+        for (int i = 0; i < elementMatchers.length; i++) {
+            describeParameterMismatch(parameters.get(i), elementMatchers[i], mismatch, i);
         }
-        return result;
     }
 
-    private boolean matchesParameter(final Object value, final Matcher<Object> matcher, Description mismatch, int index) {
+    private void describeParameterMismatch(final Object value, final Matcher<Object> matcher, Description mismatch, int index) {
         mismatch.appendText("\n      parameter " + index + " ");
-        final boolean parameterMatches = matcher.matches(value);
-        if (parameterMatches) {
+        if (matcher.matches(value)) {
             mismatch.appendText("matched: ").appendDescriptionOf(matcher);
         } else {
             mismatch.appendText("did not match: ")
@@ -60,7 +88,6 @@ public class AllParametersMatcher extends TypeSafeDiagnosingMatcher<Object[]>  i
                 .appendText(", because ");
             matcher.describeMismatch(value, mismatch);
         }
-        return parameterMatches;
     }
 
     public void describeTo(Description description) {
@@ -13,6 +13,10 @@ public class MethodMatcher extends TypeSafeMatcher<Method> {
         this.expectedMethod = expectedMethod;
     }
     
+    public Method getExpectedMethod() {
+        return expectedMethod;
+    }
+    
     @Override
     public boolean matchesSafely(Method m) {
         return expectedMethod.equals(m);
@@ -10,6 +10,10 @@ public class MockObjectMatcher extends BaseMatcher<Object> {
         this.mockObject = mockObject;
     }
     
+    public Object getMockObject() {
+        return mockObject;
+    }
+    
     public boolean matches(Object o) {
         return o == mockObject;
     }
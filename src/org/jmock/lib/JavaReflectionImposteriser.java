@@ -1,12 +1,19 @@
 package org.jmock.lib;
 
+import static java.lang.Thread.currentThread;
+
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 
 import org.jmock.api.Imposteriser;
 import org.jmock.api.Invocation;
 import org.jmock.api.Invokable;
+import org.jmock.api.PreparingImposteriser;
+import org.jmock.internal.ReflectionCache;
 import org.jmock.internal.SearchingClassLoader;
 
 /**
@@ -16,9 +23,17 @@ import org.jmock.internal.SearchingClassLoader;
  * @author npryce
  *
  */
-public class JavaReflectionImposteriser implements Imposteriser {
+public class JavaReflectionImposteriser implements PreparingImposteriser {
     public static final Imposteriser INSTANCE = new JavaReflectionImposteriser();
     
+    private static final InvocationHandler UNUSED_HANDLER = new InvocationHandler() {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            throw new UnsupportedOperationException("not used");
+        }
+    };
+    
+    private final ReflectionCache<Constructor<?>> proxyConstructors = new ReflectionCache<Constructor<?>>();
+    
     public boolean canImposterise(Class<?> type) {
         return type.isInterface();
     }
@@ -26,15 +41,66 @@ public class JavaReflectionImposteriser implements Imposteriser {
     @SuppressWarnings("unchecked")
     public <T> T imposterise(final Invokable mockObject, Class<T> mockedType, Class<?>... ancilliaryTypes) {
         final Class<?>[] proxiedClasses = prepend(mockedType, ancilliaryTypes);
-        final ClassLoader classLoader = SearchingClassLoader.combineLoadersOf(proxiedClasses);
         
-        return (T)Proxy.newProxyInstance(classLoader, proxiedClasses, new InvocationHandler() {
+        return (T)newInstance(proxyConstructorFor(proxiedClasses), new InvocationHandler() {
             public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
                 return mockObject.invoke(new Invocation(proxy, method, args));
             }
         });
     }
     
+    public void prepare(Class<?> mockedType, Class<?>... ancilliaryTypes) {
+        proxyConstructorFor(prepend(mockedType, ancilliaryTypes));
+    }
+    
+    private Constructor<?> proxyConstructorFor(Class<?>[] proxiedClasses) {
+        // The class loader that the proxy class is defined in depends on the
+        // loaders of the proxied classes and on the context class loader.
+        final Object[] key = new Object[proxiedClasses.length+1];
+        System.arraycopy(proxiedClasses, 0, key, 0, proxiedClasses.length);
+        key[key.length-1] = currentThread().getContextClassLoader();
+        
+        Constructor<?> constructor = proxyConstructors.get(key);
+        if (constructor == null) {
+            constructor = findProxyConstructor(proxiedClasses);
+            proxyConstructors.put(constructor, key);
+        }
+        return constructor;
+    }
+    
+    private Constructor<?> findProxyConstructor(Class<?>[] proxiedClasses) {
+        final ClassLoader classLoader = SearchingClassLoader.combineLoadersOf(proxiedClasses);
+        // Proxy.getProxyClass is deprecated, so find the class of a proxy
+        // instance that is created only for that purpose.
+        final Class<?> proxyClass = Proxy.newProxyInstance(classLoader, proxiedClasses, UNUSED_HANDLER).getClass();
+        
+        try {
+            final Constructor<?> constructor = proxyClass.getConstructor(InvocationHandler.class);
+            if (!Modifier.isPublic(proxyClass.getModifiers())) {
+                constructor.setAccessible(true);
+            }
+            return constructor;
+        }
+        catch (NoSuchMethodException e) {
+            throw new IllegalStateException("no constructor for proxy class " + proxyClass.getName(), e);
+        }
+    }
+    
+    private Object newInstance(Constructor<?> proxyConstructor, InvocationHandler handler) {
+        try {
+            return proxyConstructor.newInstance(handler);
+        }
+        catch (InstantiationException e) {
+            throw new IllegalStateException("could not instantiate " + proxyConstructor.getDeclaringClass().getName(), e);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException("could not instantiate " + proxyConstructor.getDeclaringClass().getName(), e);
+        }
+        catch (InvocationTargetException e) {
+            throw new IllegalStateException("could not instantiate " + proxyConstructor.getDeclaringClass().getName(), e.getCause());
+        }
+    }
+    
     private Class<?>[] prepend(Class<?> first, Class<?>... rest) {
         Class<?>[] proxiedClasses = new Class<?>[rest.length+1];
         
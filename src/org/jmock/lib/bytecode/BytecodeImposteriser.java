@@ -0,0 +1,170 @@
+package org.jmock.lib.bytecode;
+
+import static java.lang.Thread.currentThread;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import net.sf.cglib.core.ReflectUtils;
+
+import org.jmock.api.Imposteriser;
+import org.jmock.api.Invokable;
+import org.jmock.api.PreparingImposteriser;
+import org.jmock.internal.ReflectionCache;
+import org.jmock.internal.SearchingClassLoader;
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+
+/**
+ * An {@link org.jmock.api.Imposteriser} that generates imposter classes that
+ * pass invocations directly to the mock object.
+ *
+ * Each method of an imposter class refers to its {@link Method} through a
+ * constant that is looked up once, when the class is generated, and calls the
+ * mock object without going through a reflective invocation handler.  Like
+ * the {@link org.jmock.lib.legacy.ClassImposteriser}, this lets you
+ * imposterise abstract and concrete classes <em>without</em> calling the
+ * constructors of the mocked class.
+ *
+ * An imposter of a class that has package-private methods is defined in the
+ * package and class loader of the class, so that it can override them.
+ */
+public class BytecodeImposteriser implements PreparingImposteriser {
+    public static final Imposteriser INSTANCE = new BytecodeImposteriser();
+
+    private final Objenesis objenesis = new ObjenesisStd();
+    private final ReflectionCache<ImposterClass> imposterClasses = new ReflectionCache<ImposterClass>();
+
+    private BytecodeImposteriser() {}
+
+    public boolean canImposterise(Class<?> type) {
+        return !type.isPrimitive() &&
+               !Modifier.isFinal(type.getModifiers()) &&
+               (type.isInterface() || !toStringMethodIsFinal(type));
+    }
+
+    public <T> T imposterise(Invokable mockObject, Class<T> mockedType, Class<?>... ancilliaryTypes) {
+        if (!mockedType.isInterface() && toStringMethodIsFinal(mockedType)) {
+            throw new IllegalArgumentException(mockedType.getName() + " has a final toString method");
+        }
+
+        return mockedType.cast(imposterClassFor(mockedType, ancilliaryTypes).newImposter(mockObject));
+    }
+
+    public void prepare(Class<?> mockedType, Class<?>... ancilliaryTypes) {
+        if (!mockedType.isInterface() && toStringMethodIsFinal(mockedType)) {
+            throw new IllegalArgumentException(mockedType.getName() + " has a final toString method");
+        }
+
+        imposterClassFor(mockedType, ancilliaryTypes);
+    }
+
+    private ImposterClass imposterClassFor(Class<?> mockedType, Class<?>... ancilliaryTypes) {
+        // The class loader that the imposter class is defined in depends on the
+        // loaders of the imposterised types and on the context class loader.
+        final Object[] key = new Object[ancilliaryTypes.length+2];
+        key[0] = mockedType;
+        System.arraycopy(ancilliaryTypes, 0, key, 1, ancilliaryTypes.length);
+        key[key.length-1] = currentThread().getContextClassLoader();
+
+        ImposterClass imposterClass = imposterClasses.get(key);
+        if (imposterClass == null) {
+            imposterClass = new ImposterClass(defineImposterClass(new ImposterClassGenerator(mockedType, ancilliaryTypes), mockedType, ancilliaryTypes));
+            imposterClasses.put(imposterClass, key);
+        }
+        return imposterClass;
+    }
+
+    private Class<?> defineImposterClass(ImposterClassGenerator generator, Class<?> mockedType, Class<?>... ancilliaryTypes) {
+        final byte[] bytecode = generator.generate();
+        final Class<?> hostType = generator.getHostType();
+
+        final Class<?> imposterClass;
+        if (hostType == null) {
+            imposterClass = new ImposterClassLoader(SearchingClassLoader.combineLoadersOf(mockedType, ancilliaryTypes))
+                .define(generator.getClassName(), bytecode);
+        }
+        else {
+            imposterClass = defineInLoaderOf(hostType, generator.getClassName(), bytecode);
+        }
+
+        try {
+            imposterClass.getField(ImposterClassGenerator.METHODS_FIELD).set(null, generator.getMethods());
+        }
+        catch (NoSuchFieldException e) {
+            throw new IllegalStateException("generated class " + imposterClass.getName() + " has no methods field", e);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException("cannot initialise generated class " + imposterClass.getName(), e);
+        }
+        return imposterClass;
+    }
+
+    private Class<?> defineInLoaderOf(Class<?> hostType, String className, byte[] bytecode) {
+        // The imposter class must be in the same runtime package as its host type,
+        // so it can only refer to jMock types that are visible to that type's class loader.
+        final ClassLoader loader = hostType.getClassLoader();
+        if (!ImposterClassGenerator.isVisibleTo(loader, Invokable.class)) {
+            throw new IllegalArgumentException("could not imposterise " + hostType.getName() +
+                                               ": jMock is not visible to its class loader");
+        }
+
+        try {
+            return ReflectUtils.defineClass(className, bytecode, loader);
+        }
+        catch (Exception e) {
+            throw new IllegalArgumentException("could not imposterise " + hostType.getName(), e);
+        }
+    }
+
+    private boolean toStringMethodIsFinal(Class<?> type) {
+        try {
+            Method toString = type.getMethod("toString");
+            return Modifier.isFinal(toString.getModifiers());
+
+        }
+        catch (SecurityException e) {
+            throw new IllegalStateException("not allowed to reflect on toString method", e);
+        }
+        catch (NoSuchMethodException e) {
+            throw new Error("no public toString method found", e);
+        }
+    }
+
+    private class ImposterClass {
+        private final Class<?> type;
+        private final Field invokableField;
+
+        public ImposterClass(Class<?> type) {
+            this.type = type;
+            try {
+                this.invokableField = type.getField(ImposterClassGenerator.INVOKABLE_FIELD);
+            }
+            catch (NoSuchFieldException e) {
+                throw new IllegalStateException("generated class " + type.getName() + " has no invokable field", e);
+            }
+        }
+
+        public Object newImposter(Invokable mockObject) {
+            final Object imposter = objenesis.newInstance(type);
+            try {
+                invokableField.set(imposter, mockObject);
+            }
+            catch (IllegalAccessException e) {
+                throw new IllegalStateException("cannot initialise imposter of " + type.getName(), e);
+            }
+            return imposter;
+        }
+    }
+
+    private static class ImposterClassLoader extends ClassLoader {
+        public ImposterClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define(String className, byte[] bytecode) {
+            return defineClass(className, bytecode, 0, bytecode.length);
+        }
+    }
+}
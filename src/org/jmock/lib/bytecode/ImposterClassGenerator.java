@@ -0,0 +1,415 @@
+package org.jmock.lib.bytecode;
+
+import static net.sf.cglib.asm.Opcodes.*;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.cglib.asm.ClassWriter;
+import net.sf.cglib.asm.Label;
+import net.sf.cglib.asm.MethodVisitor;
+import net.sf.cglib.asm.Type;
+
+import org.jmock.api.Invocation;
+import org.jmock.api.Invokable;
+
+/**
+ * Generates the bytecode of an imposter class.
+ *
+ * Each method of the imposter class creates an {@link Invocation} that refers
+ * to a {@link Method} held in a static field of the class, and passes it
+ * directly to the {@link Invokable} held in an instance field.
+ */
+class ImposterClassGenerator {
+    public static final String INVOKABLE_FIELD = "jmock$invokable";
+    public static final String METHODS_FIELD = "jmock$methods";
+
+    private static final AtomicInteger nextClassId = new AtomicInteger();
+
+    private static final String INVOKABLE = Type.getInternalName(Invokable.class);
+    private static final String INVOCATION = Type.getInternalName(Invocation.class);
+    private static final String METHOD_ARRAY = Type.getDescriptor(Method[].class);
+
+    private final Class<?> superclass;
+    private final Class<?>[] interfaces;
+    private final Class<?> hostType;
+    private final String className;
+    private final List<Method> methods = new ArrayList<Method>();
+
+    public ImposterClassGenerator(Class<?> mockedType, Class<?>... ancilliaryTypes) {
+        final Set<Class<?>> allInterfaces = new LinkedHashSet<Class<?>>();
+        if (mockedType.isInterface()) {
+            this.superclass = Object.class;
+            allInterfaces.add(mockedType);
+        }
+        else {
+            this.superclass = mockedType;
+        }
+        for (Class<?> ancilliaryType : ancilliaryTypes) {
+            allInterfaces.add(ancilliaryType);
+        }
+
+        this.interfaces = allInterfaces.toArray(new Class<?>[allInterfaces.size()]);
+        this.hostType = findHostType(mockedType, interfaces);
+        this.className = (hostType == null ? "org.jmock.codegen." + mockedType.getName() : hostType.getName())
+                       + "$$ImposterByJMock$$" + nextClassId.getAndIncrement();
+
+        collectMethods();
+    }
+
+    /**
+     * @return the type that the imposter class must be defined alongside, in the
+     *         same package and class loader, or null if it can be defined anywhere.
+     */
+    public Class<?> getHostType() {
+        return hostType;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the methods of the imposter class, in the order in which they must be
+     *         stored in the {@link #METHODS_FIELD} field.
+     */
+    public Method[] getMethods() {
+        return methods.toArray(new Method[methods.size()]);
+    }
+
+    public byte[] generate() {
+        final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+
+        writer.visit(V1_5, ACC_PUBLIC | ACC_SUPER | ACC_SYNTHETIC,
+                     internalName(className), null,
+                     Type.getInternalName(superclass),
+                     internalNamesOf(interfaces));
+
+        writer.visitField(ACC_PUBLIC | ACC_SYNTHETIC, INVOKABLE_FIELD, "L" + INVOKABLE + ";", null, null).visitEnd();
+        writer.visitField(ACC_PUBLIC | ACC_STATIC | ACC_SYNTHETIC, METHODS_FIELD, METHOD_ARRAY, null, null).visitEnd();
+
+        for (int i = 0; i < methods.size(); i++) {
+            generateMethod(writer, i, methods.get(i));
+        }
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private void collectMethods() {
+        final Set<String> signatures = new HashSet<String>();
+
+        for (Class<?> c = superclass; c != null; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                // A finalizer is not imposterised unless an interface makes it public
+                if (isInheritedByImposter(method) && !isFinalizer(method)
+                    && signatures.add(signatureOf(method)) && isOverridable(method))
+                {
+                    methods.add(method);
+                }
+            }
+        }
+
+        for (Class<?> anInterface : allInterfacesOf(superclass, interfaces)) {
+            for (Method method : anInterface.getMethods()) {
+                if (!Modifier.isStatic(method.getModifiers()) && signatures.add(signatureOf(method))) {
+                    methods.add(method);
+                }
+            }
+        }
+    }
+
+    private boolean isInheritedByImposter(Method method) {
+        final int modifiers = method.getModifiers();
+
+        if (Modifier.isStatic(modifiers) || Modifier.isPrivate(modifiers)) {
+            return false;
+        }
+        else if (Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers)) {
+            return true;
+        }
+        else {
+            return isInSamePackageAsImposter(method.getDeclaringClass());
+        }
+    }
+
+    private boolean isOverridable(Method method) {
+        // Bridge methods call the method they bridge to, which is overridden
+        return !Modifier.isFinal(method.getModifiers()) && !method.isBridge();
+    }
+
+    private boolean isInSamePackageAsImposter(Class<?> type) {
+        return hostType != null && isInSamePackage(hostType, type);
+    }
+
+    private void generateMethod(ClassWriter writer, int methodIndex, Method method) {
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        final Class<?>[] exceptionTypes = method.getExceptionTypes();
+        final Class<?> returnType = method.getReturnType();
+
+        final MethodVisitor mv = writer.visitMethod(accessOf(method), method.getName(),
+                                                    Type.getMethodDescriptor(method), null,
+                                                    internalNamesOf(exceptionTypes));
+        mv.visitCode();
+
+        final Label start = new Label();
+        final Label end = new Label();
+        final Label rethrow = new Label();
+        final Label wrap = new Label();
+
+        mv.visitTryCatchBlock(start, end, rethrow, "java/lang/RuntimeException");
+        mv.visitTryCatchBlock(start, end, rethrow, "java/lang/Error");
+        for (Class<?> exceptionType : exceptionTypes) {
+            mv.visitTryCatchBlock(start, end, rethrow, Type.getInternalName(exceptionType));
+        }
+        mv.visitTryCatchBlock(start, end, wrap, "java/lang/Throwable");
+
+        mv.visitLabel(start);
+
+        // return invokable.invoke(new Invocation(this, methods[i], new Object[]{...}))
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, internalName(className), INVOKABLE_FIELD, "L" + INVOKABLE + ";");
+        mv.visitTypeInsn(NEW, INVOCATION);
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETSTATIC, internalName(className), METHODS_FIELD, METHOD_ARRAY);
+        pushInt(mv, methodIndex);
+        mv.visitInsn(AALOAD);
+        pushParameters(mv, parameterTypes);
+        mv.visitMethodInsn(INVOKESPECIAL, INVOCATION, "<init>",
+                           "(Ljava/lang/Object;Ljava/lang/reflect/Method;[Ljava/lang/Object;)V");
+        mv.visitMethodInsn(INVOKEINTERFACE, INVOKABLE, "invoke", "(L" + INVOCATION + ";)Ljava/lang/Object;");
+        returnResult(mv, returnType);
+
+        mv.visitLabel(end);
+
+        mv.visitLabel(rethrow);
+        mv.visitInsn(ATHROW);
+
+        mv.visitLabel(wrap);
+        final String undeclared = Type.getInternalName(UndeclaredThrowableException.class);
+        mv.visitTypeInsn(NEW, undeclared);
+        mv.visitInsn(DUP_X1);
+        mv.visitInsn(SWAP);
+        mv.visitMethodInsn(INVOKESPECIAL, undeclared, "<init>", "(Ljava/lang/Throwable;)V");
+        mv.visitInsn(ATHROW);
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void pushParameters(MethodVisitor mv, Class<?>[] parameterTypes) {
+        if (parameterTypes.length == 0) {
+            mv.visitInsn(ACONST_NULL);
+            return;
+        }
+
+        pushInt(mv, parameterTypes.length);
+        mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+
+        int slot = 1;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            final Type type = Type.getType(parameterTypes[i]);
+
+            mv.visitInsn(DUP);
+            pushInt(mv, i);
+            mv.visitVarInsn(type.getOpcode(ILOAD), slot);
+            if (parameterTypes[i].isPrimitive()) {
+                final Type boxType = Type.getType(boxTypeOf(parameterTypes[i]));
+                mv.visitMethodInsn(INVOKESTATIC, boxType.getInternalName(), "valueOf",
+                                   "(" + type.getDescriptor() + ")" + boxType.getDescriptor());
+            }
+            mv.visitInsn(AASTORE);
+
+            slot += type.getSize();
+        }
+    }
+
+    private void returnResult(MethodVisitor mv, Class<?> returnType) {
+        if (returnType == void.class) {
+            mv.visitInsn(POP);
+            mv.visitInsn(RETURN);
+        }
+        else if (returnType.isPrimitive()) {
+            final Type type = Type.getType(returnType);
+            final String boxType = Type.getInternalName(boxTypeOf(returnType));
+            mv.visitTypeInsn(CHECKCAST, boxType);
+            mv.visitMethodInsn(INVOKEVIRTUAL, boxType, returnType.getName() + "Value", "()" + type.getDescriptor());
+            mv.visitInsn(type.getOpcode(IRETURN));
+        }
+        else {
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(returnType));
+            mv.visitInsn(ARETURN);
+        }
+    }
+
+    private static void pushInt(MethodVisitor mv, int i) {
+        if (i <= 5) {
+            mv.visitInsn(ICONST_0 + i);
+        }
+        else if (i <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, i);
+        }
+        else if (i <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, i);
+        }
+        else {
+            mv.visitLdcInsn(i);
+        }
+    }
+
+    private static int accessOf(Method method) {
+        final int modifiers = method.getModifiers();
+        final int access = method.getDeclaringClass().isInterface()
+                         ? ACC_PUBLIC
+                         : modifiers & (ACC_PUBLIC | ACC_PROTECTED);
+        return method.isVarArgs() ? access | ACC_VARARGS : access;
+    }
+
+    private static Class<?> boxTypeOf(Class<?> primitiveType) {
+        if (primitiveType == boolean.class) return Boolean.class;
+        if (primitiveType == byte.class) return Byte.class;
+        if (primitiveType == char.class) return Character.class;
+        if (primitiveType == short.class) return Short.class;
+        if (primitiveType == int.class) return Integer.class;
+        if (primitiveType == long.class) return Long.class;
+        if (primitiveType == float.class) return Float.class;
+        if (primitiveType == double.class) return Double.class;
+        throw new IllegalArgumentException("not a primitive type: " + primitiveType);
+    }
+
+    private static boolean isFinalizer(Method method) {
+        return method.getName().equals("finalize") && method.getParameterTypes().length == 0;
+    }
+
+    private static String signatureOf(Method method) {
+        return method.getName() + Type.getMethodDescriptor(method);
+    }
+
+    private static Set<Class<?>> allInterfacesOf(Class<?> superclass, Class<?>[] interfaces) {
+        final Set<Class<?>> all = new LinkedHashSet<Class<?>>();
+        for (Class<?> anInterface : interfaces) {
+            all.add(anInterface);
+        }
+        for (Class<?> c = superclass; c != null; c = c.getSuperclass()) {
+            addInterfacesOf(c, all);
+        }
+        return all;
+    }
+
+    private static void addInterfacesOf(Class<?> type, Set<Class<?>> all) {
+        for (Class<?> anInterface : type.getInterfaces()) {
+            if (all.add(anInterface)) {
+                addInterfacesOf(anInterface, all);
+            }
+        }
+    }
+
+    /*
+     * An imposter must be defined alongside a non-public type that it implements
+     * or extends.  Otherwise, it is defined alongside a mocked class that has
+     * package-private methods, so that it can override them, unless the class's
+     * package cannot be extended.
+     */
+    private static Class<?> findHostType(Class<?> mockedType, Class<?>[] interfaces) {
+        final Class<?> nonPublicType = findNonPublicType(mockedType, interfaces);
+        if (nonPublicType != null) {
+            return nonPublicType;
+        }
+        else if (hasPackagePrivateMethods(mockedType) && canBeDefinedAlongside(mockedType)) {
+            return mockedType;
+        }
+        else {
+            return null;
+        }
+    }
+
+    private static boolean hasPackagePrivateMethods(Class<?> mockedType) {
+        if (mockedType.isInterface()) {
+            return false;
+        }
+
+        for (Class<?> c = mockedType; c != null; c = c.getSuperclass()) {
+            if (isInSamePackage(mockedType, c)) {
+                for (Method method : c.getDeclaredMethods()) {
+                    final int modifiers = method.getModifiers();
+                    if ((modifiers & (ACC_PUBLIC | ACC_PROTECTED | ACC_PRIVATE | ACC_STATIC | ACC_FINAL)) == 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean canBeDefinedAlongside(Class<?> type) {
+        final Package typePackage = type.getPackage();
+        return type.getClassLoader() != null
+            && type.getSigners() == null
+            && (typePackage == null || !typePackage.isSealed())
+            && isVisibleTo(type.getClassLoader(), Invokable.class);
+    }
+
+    /**
+     * @return true if the type is the one loaded by the given class loader.
+     */
+    static boolean isVisibleTo(ClassLoader loader, Class<?> type) {
+        try {
+            return Class.forName(type.getName(), false, loader) == type;
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static boolean isInSamePackage(Class<?> type, Class<?> otherType) {
+        return type.getClassLoader() == otherType.getClassLoader()
+            && packageNameOf(type).equals(packageNameOf(otherType));
+    }
+
+    private static Class<?> findNonPublicType(Class<?> mockedType, Class<?>[] interfaces) {
+        Class<?> nonPublicType = Modifier.isPublic(mockedType.getModifiers()) ? null : mockedType;
+
+        for (Class<?> anInterface : interfaces) {
+            if (!Modifier.isPublic(anInterface.getModifiers())) {
+                if (nonPublicType == null) {
+                    nonPublicType = anInterface;
+                }
+                else if (nonPublicType.getClassLoader() != anInterface.getClassLoader()
+                      || !packageNameOf(nonPublicType).equals(packageNameOf(anInterface)))
+                {
+                    throw new IllegalArgumentException(
+                        "cannot imposterise non-public types from different packages: " +
+                        nonPublicType.getName() + " and " + anInterface.getName());
+                }
+            }
+        }
+
+        return nonPublicType;
+    }
+
+    private static String packageNameOf(Class<?> type) {
+        final String name = type.getName();
+        final int lastDot = name.lastIndexOf('.');
+        return lastDot < 0 ? "" : name.substring(0, lastDot);
+    }
+
+    private static String internalName(String className) {
+        return className.replace('.', '/');
+    }
+
+    private static String[] internalNamesOf(Class<?>[] types) {
+        final String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            names[i] = Type.getInternalName(types[i]);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,172 @@
+package org.jmock.lib.concurrent;
+
+import static org.hamcrest.StringDescription.asString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jmock.api.Invocation;
+import org.jmock.api.Invokable;
+import org.jmock.api.ThreadingPolicy;
+import org.jmock.internal.ObservableStatePredicate;
+import org.jmock.internal.StateChangeListener;
+import org.jmock.internal.StateMachine;
+import org.jmock.internal.StatePredicate;
+
+
+/**
+ * A ThreadingPolicy that makes the Mockery thread-safe and helps tests
+ * synchronise with background threads in the same way as a
+ * {@link Synchroniser}, but that is built on a {@link ReentrantLock} and its
+ * {@link Condition}s instead of Java's built-in monitors.
+ *
+ * Threads that wait for the lock or a Condition can be parked and unparked by
+ * the JVM without holding on to an operating system thread, so this policy
+ * suits tests that call mock objects from very many threads, including JVMs
+ * that implement threads that are not backed by an operating system thread of
+ * their own.
+ *
+ * Timeouts are measured with {@link System#nanoTime()}, so they are not
+ * affected by changes to the system clock.
+ */
+public class ReentrantLockSynchroniser implements ThreadingPolicy {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<Waiter> waiters = new ArrayList<Waiter>();
+    private Error firstError = null;
+
+    /**
+     * Waits for a StatePredicate to become active.
+     *
+     * Warning: this will wait forever unless the test itself has a timeout.
+     *
+     * @param p the StatePredicate to wait for
+     * @throws InterruptedException
+     */
+    public void waitUntil(StatePredicate p) throws InterruptedException {
+        waitUntil(p, false, 0);
+    }
+
+    /**
+     * Waits up to a timeout for a StatePredicate to become active.  Fails the
+     * test if the timeout expires.
+     *
+     * @param p the StatePredicate to wait for
+     * @param timeoutMs the timeout in milliseconds
+     * @throws InterruptedException
+     */
+    public void waitUntil(StatePredicate p, long timeoutMs) throws InterruptedException {
+        waitUntil(p, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits up to a timeout for a StatePredicate to become active.  Fails the
+     * test if the timeout expires.
+     *
+     * @param p the StatePredicate to wait for
+     * @param timeout the timeout
+     * @param unit the unit of the timeout
+     * @throws InterruptedException
+     */
+    public void waitUntil(StatePredicate p, long timeout, TimeUnit unit) throws InterruptedException {
+        waitUntil(p, true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    private void waitUntil(StatePredicate p, boolean hasDeadline, long deadline) throws InterruptedException {
+        final Waiter waiter = new Waiter(p instanceof ObservableStatePredicate, lock.newCondition());
+        if (waiter.isTargeted) {
+            ((ObservableStatePredicate)p).addStateChangeListener(waiter);
+        }
+
+        lock.lock();
+        try {
+            waiters.add(waiter);
+            while (!p.isActive()) {
+                if (firstError != null) {
+                    throw firstError;
+                }
+
+                if (!hasDeadline) {
+                    waiter.condition.await();
+                }
+                else {
+                    final long timeRemaining = deadline - System.nanoTime();
+                    if (timeRemaining <= 0) {
+                        throw new RuntimeException("timed out waiting for " + asString(p));
+                    }
+                    waiter.condition.awaitNanos(timeRemaining);
+                }
+            }
+        }
+        finally {
+            waiters.remove(waiter);
+            lock.unlock();
+
+            if (waiter.isTargeted) {
+                ((ObservableStatePredicate)p).removeStateChangeListener(waiter);
+            }
+        }
+    }
+
+    public Invokable synchroniseAccessTo(final Invokable mockObject) {
+        return new Invokable() {
+            public Object invoke(Invocation invocation) throws Throwable {
+                return synchroniseInvocation(mockObject, invocation);
+            }
+        };
+    }
+
+    private Object synchroniseInvocation(Invokable mockObject, Invocation invocation) throws Throwable {
+        lock.lock();
+        try {
+            return mockObject.invoke(invocation);
+        }
+        catch (Error e) {
+            if (firstError == null) {
+                firstError = e;
+                signalWaiters(true);
+            }
+            throw e;
+        }
+        finally {
+            signalWaiters(false);
+            lock.unlock();
+        }
+    }
+
+    private void signalWaiters(boolean includingTargetedWaiters) {
+        for (Waiter waiter : waiters) {
+            if (includingTargetedWaiters || !waiter.isTargeted) {
+                waiter.condition.signal();
+            }
+        }
+    }
+
+    /*
+     * Like the waiters of a Synchroniser, a thread waiting for a predicate of a
+     * StateMachine is only signalled when the state machine changes state or an
+     * invocation fails.  State machines can change state in threads that do not
+     * hold the lock, so the listener takes it before signalling.
+     */
+    private class Waiter implements StateChangeListener {
+        public final boolean isTargeted;
+        public final Condition condition;
+
+        public Waiter(boolean isTargeted, Condition condition) {
+            this.isTargeted = isTargeted;
+            this.condition = condition;
+        }
+
+        public void stateChanged(StateMachine stateMachine) {
+            lock.lock();
+            try {
+                condition.signal();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+}
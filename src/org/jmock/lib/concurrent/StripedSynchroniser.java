@@ -0,0 +1,194 @@
+package org.jmock.lib.concurrent;
+
+import static org.hamcrest.StringDescription.asString;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jmock.api.Invocation;
+import org.jmock.api.Invokable;
+import org.jmock.api.ThreadingPolicy;
+import org.jmock.internal.ConfinedDispatch;
+import org.jmock.internal.StatePredicate;
+import org.jmock.lib.concurrent.internal.FixedTimeout;
+import org.jmock.lib.concurrent.internal.InfiniteTimeout;
+import org.jmock.lib.concurrent.internal.Timeout;
+
+
+/**
+ * A ThreadingPolicy that makes the Mockery thread-safe without making threads
+ * that call different mock objects wait for each other, and that helps tests
+ * synchronise with background threads in the same way as a {@link Synchroniser}.
+ *
+ * Each mock object has its own lock.  An invocation is dispatched holding only
+ * the lock of the invoked mock object if every expectation that could match it
+ * is confined to that mock object: that is, if the expectations name the mock
+ * object and method explicitly and are not constrained by, and do not change,
+ * sequences or states.  Other invocations also take a lock that is shared by
+ * all the mock objects of the Mockery.
+ *
+ * An invocation is dispatched without locking at all if every expectation that
+ * could match it is a stub: a confined expectation that allows any number of
+ * invocations and returns a value, returns a default value or does nothing.
+ * Stubs count their invocations atomically, so tests that only stub mock
+ * objects, with <code>allowing(...)</code> clauses, do not make threads wait
+ * for each other.  The parameter matchers of stubs must therefore be
+ * thread-safe, as Hamcrest's matchers are.  The Object methods of a Mockery's
+ * mock objects are not locked either, because mock objects implement them
+ * without using any state that can change.
+ *
+ * The Mockery records every invocation in its
+ * {@link org.jmock.api.InvocationHistory}, which all threads share.  A
+ * {@link org.jmock.lib.history.NoInvocationHistory} or
+ * {@link org.jmock.lib.history.JournalledInvocationHistory} records invocations
+ * without locking.
+ *
+ * Actions other than those of stubs run while the invoked mock object is locked.  An action that invokes
+ * another mock object can therefore deadlock with a thread that is doing the
+ * reverse.  Use a Synchroniser if actions in the test invoke mock objects.
+ */
+public class StripedSynchroniser implements ThreadingPolicy {
+    private final ReentrantLock sharedLock = new ReentrantLock();
+    private final Condition invoked = sharedLock.newCondition();
+    private final AtomicInteger waiterCount = new AtomicInteger(0);
+    private final AtomicReference<Error> firstError = new AtomicReference<Error>(null);
+
+    /**
+     * Waits for a StatePredicate to become active.
+     *
+     * Warning: this will wait forever unless the test itself has a timeout.
+     *
+     * @param p the StatePredicate to wait for
+     * @throws InterruptedException
+     */
+    public void waitUntil(StatePredicate p) throws InterruptedException {
+        waitUntil(p, new InfiniteTimeout());
+    }
+
+    /**
+     * Waits up to a timeout for a StatePredicate to become active.  Fails the
+     * test if the timeout expires.
+     *
+     * @param p the StatePredicate to wait for
+     * @param timeoutMs the timeout in milliseconds
+     * @throws InterruptedException
+     */
+    public void waitUntil(StatePredicate p, long timeoutMs) throws InterruptedException {
+        waitUntil(p, new FixedTimeout(timeoutMs));
+    }
+
+    private void waitUntil(StatePredicate p, Timeout timeout) throws InterruptedException {
+        sharedLock.lock();
+        waiterCount.incrementAndGet();
+        try {
+            while (!p.isActive()) {
+                try {
+                    final long timeRemaining = timeout.timeRemaining();
+                    if (timeRemaining == 0) {
+                        invoked.await();
+                    }
+                    else {
+                        invoked.await(timeRemaining, TimeUnit.MILLISECONDS);
+                    }
+                }
+                catch (TimeoutException e) {
+                    if (firstError.get() != null) {
+                        throw firstError.get();
+                    }
+                    else {
+                        throw new RuntimeException("timed out waiting for " + asString(p));
+                    }
+                }
+            }
+        }
+        finally {
+            waiterCount.decrementAndGet();
+            sharedLock.unlock();
+        }
+    }
+
+    public Invokable synchroniseAccessTo(final Invokable mockObject) {
+        final ReentrantLock mockObjectLock = new ReentrantLock();
+        return new Invokable() {
+            public Object invoke(Invocation invocation) throws Throwable {
+                return synchroniseInvocation(mockObject, mockObjectLock, invocation);
+            }
+        };
+    }
+
+    private Object synchroniseInvocation(Invokable mockObject, ReentrantLock mockObjectLock, Invocation invocation) throws Throwable {
+        if (isStubbedOnly(mockObject, invocation)) {
+            try {
+                return invokeRecordingFirstError(mockObject, invocation);
+            }
+            finally {
+                signalWaiters();
+            }
+        }
+
+        mockObjectLock.lock();
+        try {
+            if (isConfinedToMockObject(mockObject, invocation)) {
+                try {
+                    return invokeRecordingFirstError(mockObject, invocation);
+                }
+                finally {
+                    signalWaiters();
+                }
+            }
+
+            sharedLock.lock();
+            try {
+                return invokeRecordingFirstError(mockObject, invocation);
+            }
+            finally {
+                invoked.signalAll();
+                sharedLock.unlock();
+            }
+        }
+        finally {
+            mockObjectLock.unlock();
+        }
+    }
+
+    private Object invokeRecordingFirstError(Invokable mockObject, Invocation invocation) throws Throwable {
+        try {
+            return mockObject.invoke(invocation);
+        }
+        catch (Error e) {
+            firstError.compareAndSet(null, e);
+            throw e;
+        }
+    }
+
+    /*
+     * Only waiting threads take the shared lock after an invocation that is
+     * confined to its mock object or stubbed, so that other threads do not
+     * contend for it.
+     */
+    private void signalWaiters() {
+        if (waiterCount.get() > 0) {
+            sharedLock.lock();
+            try {
+                invoked.signalAll();
+            }
+            finally {
+                sharedLock.unlock();
+            }
+        }
+    }
+
+    private static boolean isStubbedOnly(Invokable mockObject, Invocation invocation) {
+        return mockObject instanceof ConfinedDispatch
+            && ((ConfinedDispatch)mockObject).isStubbedOnly(invocation);
+    }
+
+    private static boolean isConfinedToMockObject(Invokable mockObject, Invocation invocation) {
+        return mockObject instanceof ConfinedDispatch
+            && ((ConfinedDispatch)mockObject).isConfinedToMockObject(invocation);
+    }
+}
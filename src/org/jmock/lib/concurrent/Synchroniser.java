@@ -2,11 +2,16 @@ package org.jmock.lib.concurrent;
 
 import static org.hamcrest.StringDescription.asString;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 
 import org.jmock.api.Invocation;
 import org.jmock.api.Invokable;
 import org.jmock.api.ThreadingPolicy;
+import org.jmock.internal.ObservableStatePredicate;
+import org.jmock.internal.StateChangeListener;
+import org.jmock.internal.StateMachine;
 import org.jmock.internal.StatePredicate;
 import org.jmock.lib.concurrent.internal.FixedTimeout;
 import org.jmock.lib.concurrent.internal.InfiniteTimeout;
@@ -17,10 +22,15 @@ import org.jmock.lib.concurrent.internal.Timeout;
  * A ThreadingPolicy that makes the Mockery thread-safe and
  * helps tests synchronise with background threads.
  *
+ * A thread waiting for the {@link org.jmock.States} of a Mockery to enter a
+ * state is woken when those states change, not after every invocation, and
+ * fails as soon as an invocation fails the test.
+ *
  * @author Nat Pryce
  */
 public class Synchroniser implements ThreadingPolicy {
     private final Object sync = new Object();
+    private final List<Waiter> waiters = new ArrayList<Waiter>();
     private Error firstError = null;
 
 
@@ -49,22 +59,62 @@ public class Synchroniser implements ThreadingPolicy {
     }
 
     private void waitUntil(StatePredicate p, Timeout timeout) throws InterruptedException {
-        synchronized(sync) {
-            while (!p.isActive()) {
+        final Waiter waiter = new Waiter(p instanceof ObservableStatePredicate);
+        addWaiter(p, waiter);
+        try {
+            while (!isActiveOrFailed(p)) {
                 try {
-                    sync.wait(timeout.timeRemaining());
+                    waiter.await(timeout.timeRemaining());
                 }
                 catch (TimeoutException e) {
-                    if (firstError != null) {
-                        throw firstError;
-                    }
-                    else {
-                        throw new RuntimeException("timed out waiting for " + asString(p));
+                    synchronized(sync) {
+                        if (firstError != null) {
+                            throw firstError;
+                        }
+                        else {
+                            throw new RuntimeException("timed out waiting for " + asString(p));
+                        }
                     }
                 }
             }
         }
+        finally {
+            removeWaiter(p, waiter);
+        }
+    }
+
+    /*
+     * Once an invocation has failed the test, a waiting thread fails at once
+     * instead of waiting for a state that may never be entered.
+     */
+    private boolean isActiveOrFailed(StatePredicate p) {
+        synchronized(sync) {
+            if (p.isActive()) {
+                return true;
+            }
+            if (firstError != null) {
+                throw firstError;
+            }
+            return false;
+        }
+    }
 
+    private void addWaiter(StatePredicate p, Waiter waiter) {
+        synchronized(sync) {
+            waiters.add(waiter);
+        }
+        if (waiter.isTargeted) {
+            ((ObservableStatePredicate)p).addStateChangeListener(waiter);
+        }
+    }
+
+    private void removeWaiter(StatePredicate p, Waiter waiter) {
+        if (waiter.isTargeted) {
+            ((ObservableStatePredicate)p).removeStateChangeListener(waiter);
+        }
+        synchronized(sync) {
+            waiters.remove(waiter);
+        }
     }
 
     public Invokable synchroniseAccessTo(final Invokable mockObject) {
@@ -83,12 +133,52 @@ public class Synchroniser implements ThreadingPolicy {
             catch (Error e) {
                 if (firstError == null) {
                     firstError = e;
+                    wakeWaiters(true);
                 }
                 throw e;
             }
             finally {
-                sync.notifyAll();
+                wakeWaiters(false);
+            }
+        }
+    }
+
+    private void wakeWaiters(boolean includingTargetedWaiters) {
+        for (Waiter waiter : waiters) {
+            if (includingTargetedWaiters || !waiter.isTargeted) {
+                waiter.wake();
+            }
+        }
+    }
+
+    /*
+     * A thread waiting for a predicate of a StateMachine is only woken when the
+     * state machine changes state or an invocation fails.  A thread waiting for
+     * any other predicate is woken after every invocation, because it cannot
+     * tell what the predicate depends on.
+     */
+    private static class Waiter implements StateChangeListener {
+        public final boolean isTargeted;
+        private boolean isWoken = false;
+
+        public Waiter(boolean isTargeted) {
+            this.isTargeted = isTargeted;
+        }
+
+        public void stateChanged(StateMachine stateMachine) {
+            wake();
+        }
+
+        public synchronized void wake() {
+            isWoken = true;
+            notifyAll();
+        }
+
+        public synchronized void await(long timeoutMs) throws InterruptedException {
+            if (!isWoken) {
+                wait(timeoutMs);
             }
+            isWoken = false;
         }
     }
 }
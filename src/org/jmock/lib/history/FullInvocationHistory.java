@@ -0,0 +1,29 @@
+package org.jmock.lib.history;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hamcrest.Description;
+import org.jmock.api.Invocation;
+import org.jmock.api.InvocationHistory;
+
+/**
+ * An InvocationHistory that keeps every invocation.  This is what a
+ * {@link org.jmock.Mockery} uses by default.
+ */
+public class FullInvocationHistory implements InvocationHistory {
+    private final List<Invocation> invocations = new ArrayList<Invocation>();
+
+    public synchronized void record(Invocation invocation) {
+        invocations.add(invocation);
+    }
+
+    public synchronized void describeTo(Description description) {
+        if (invocations.isEmpty()) {
+            description.appendText(" nothing!");
+        }
+        else {
+            description.appendList("\n  ", "\n  ", "\n", invocations);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.jmock.lib.history;
+
+import static org.jmock.internal.Formatting.invocations;
+import static org.jmock.lib.history.JournalledInvocationHistory.COMMITTED_END_OFFSET;
+import static org.jmock.lib.history.JournalledInvocationHistory.HEADER_SIZE;
+import static org.jmock.lib.history.JournalledInvocationHistory.INVOCATION_RECORD;
+import static org.jmock.lib.history.JournalledInvocationHistory.MAGIC;
+import static org.jmock.lib.history.JournalledInvocationHistory.METHOD_RECORD;
+import static org.jmock.lib.history.JournalledInvocationHistory.OBJECT_RECORD;
+import static org.jmock.lib.history.JournalledInvocationHistory.RECORD_HEADER_SIZE;
+import static org.jmock.lib.history.JournalledInvocationHistory.VERSION;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hamcrest.Description;
+import org.hamcrest.SelfDescribing;
+
+/**
+ * Reads the invocations journalled by a {@link JournalledInvocationHistory}.
+ *
+ * Describes them in the same way as the history of a {@link org.jmock.Mockery},
+ * one invocation per line, so that a journal saved by an earlier run can be
+ * replayed into a failure report or passed on to other tools.
+ *
+ * The reader only keeps the names of mock objects and methods on the heap.
+ * Invocations are read from the journal each time they are asked for.  A
+ * reader of a file maps the file into memory and should be {@link #close()
+ * closed} when it is no longer needed.
+ */
+public class InvocationJournalReader implements SelfDescribing {
+    private final ByteBuffer journal;
+    private final int end;
+    private final MappedByteBuffer mapping;
+    private final Map<Integer, String> objectNames = new HashMap<Integer, String>();
+    private final Map<Integer, String[]> methodNames = new HashMap<Integer, String[]>();
+    private int invocationCount = 0;
+
+    public InvocationJournalReader(File journalFile) throws IOException {
+        this(map(journalFile));
+    }
+
+    private InvocationJournalReader(MappedByteBuffer mapping) {
+        this(checkHeader(mapping), mapping.getInt(COMMITTED_END_OFFSET), mapping);
+    }
+
+    InvocationJournalReader(ByteBuffer journal, int end) {
+        this(checkHeader(journal), end, null);
+    }
+
+    private InvocationJournalReader(ByteBuffer journal, int end, MappedByteBuffer mapping) {
+        if (end < HEADER_SIZE || end > journal.limit()) {
+            throw new IllegalArgumentException("corrupt invocation journal header");
+        }
+
+        this.journal = journal;
+        this.end = end;
+        this.mapping = mapping;
+
+        // Threads can journal a new mock object or method after an invocation
+        // that refers to it, so all names are read before any invocation
+        int start = HEADER_SIZE;
+        while (start < end) {
+            final ByteBuffer record = recordAt(start);
+            switch (journal.get(start + 4)) {
+            case OBJECT_RECORD:
+                objectNames.put(record.getInt(), readString(record));
+                break;
+            case METHOD_RECORD:
+                methodNames.put(record.getInt(), new String[] {readString(record), readString(record)});
+                break;
+            case INVOCATION_RECORD:
+                invocationCount++;
+                break;
+            default:
+                throw new IllegalArgumentException("corrupt invocation journal at offset " + start);
+            }
+            start = record.limit();
+        }
+    }
+
+    /**
+     * @return the number of journalled invocations.
+     */
+    public int getInvocationCount() {
+        return invocationCount;
+    }
+
+    /**
+     * @return the journalled invocations, in the order they were journalled.
+     */
+    public List<JournalledInvocation> getInvocations() {
+        return readInvocations(0);
+    }
+
+    public void describeTo(Description description) {
+        if (invocationCount == 0) {
+            description.appendText(" nothing!");
+        }
+        else {
+            description.appendList("\n  ", "\n  ", "\n", getInvocations());
+        }
+    }
+
+    /**
+     * Describes only the most recent invocations, so that the description of
+     * a large journal does not use a lot of memory, and counts the others.
+     */
+    void describeMostRecentTo(Description description, int limit) {
+        final int omittedCount = Math.max(0, invocationCount - limit);
+        if (omittedCount > 0) {
+            description.appendText("\n  (" + invocations(omittedCount) + " before these are only in the journal)");
+        }
+        for (JournalledInvocation invocation : readInvocations(omittedCount)) {
+            description.appendText("\n  ").appendDescriptionOf(invocation);
+        }
+    }
+
+    /**
+     * Unmaps the journal file, if this reader mapped it.  The invocations
+     * cannot be read after the reader is closed.
+     */
+    public void close() {
+        if (mapping != null) {
+            JournalledInvocationHistory.unmap(mapping);
+        }
+    }
+
+    private List<JournalledInvocation> readInvocations(int skipCount) {
+        final List<JournalledInvocation> invocations = new ArrayList<JournalledInvocation>(invocationCount - skipCount);
+
+        int skipped = 0;
+        int start = HEADER_SIZE;
+        while (start < end) {
+            final ByteBuffer record = recordAt(start);
+            if (journal.get(start + 4) == INVOCATION_RECORD) {
+                if (skipped < skipCount) {
+                    skipped++;
+                }
+                else {
+                    invocations.add(readInvocation(record));
+                }
+            }
+            start = record.limit();
+        }
+        return invocations;
+    }
+
+    private ByteBuffer recordAt(int start) {
+        if (end - start < RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("corrupt invocation journal at offset " + start);
+        }
+        final int length = journal.getInt(start);
+        if (length < 1 || length > end - start - 4) {
+            throw new IllegalArgumentException("corrupt invocation journal at offset " + start);
+        }
+
+        final ByteBuffer record = journal.duplicate();
+        record.limit(start + 4 + length);
+        record.position(start + RECORD_HEADER_SIZE);
+        return record;
+    }
+
+    private JournalledInvocation readInvocation(ByteBuffer record) {
+        final String objectName = nameOrUnknown(objectNames.get(record.getInt()));
+        final String[] methodName = methodNames.get(record.getInt());
+        final long threadId = record.getLong();
+        final long timestamp = record.getLong();
+        final String[] argumentDescriptions = new String[record.getInt()];
+        for (int i = 0; i < argumentDescriptions.length; i++) {
+            argumentDescriptions[i] = readString(record);
+        }
+
+        return new JournalledInvocation(
+            objectName,
+            nameOrUnknown(methodName == null ? null : methodName[0]),
+            nameOrUnknown(methodName == null ? null : methodName[1]),
+            argumentDescriptions, threadId, timestamp);
+    }
+
+    private static String nameOrUnknown(String name) {
+        return name == null ? "<unknown>" : name;
+    }
+
+    private static String readString(ByteBuffer record) {
+        final byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("the JVM does not support UTF-8", e);
+        }
+    }
+
+    private static ByteBuffer checkHeader(ByteBuffer journal) {
+        if (journal.limit() < HEADER_SIZE || journal.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("not an invocation journal");
+        }
+        if (journal.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("unsupported invocation journal version " + journal.getInt(4));
+        }
+        return journal;
+    }
+
+    private static MappedByteBuffer map(File journalFile) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(journalFile, "r");
+        try {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        }
+        finally {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.jmock.lib.history;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hamcrest.Description;
+import org.hamcrest.SelfDescribing;
+
+/**
+ * An invocation read from a journal by an {@link InvocationJournalReader}.
+ *
+ * The journal keeps descriptions of the mock object, method and arguments of
+ * an invocation, not the objects themselves.
+ */
+public class JournalledInvocation implements SelfDescribing {
+    private final String objectName;
+    private final String methodName;
+    private final String methodSignature;
+    private final List<String> argumentDescriptions;
+    private final long threadId;
+    private final long timestamp;
+
+    public JournalledInvocation(String objectName, String methodName, String methodSignature,
+                                String[] argumentDescriptions, long threadId, long timestamp)
+    {
+        this.objectName = objectName;
+        this.methodName = methodName;
+        this.methodSignature = methodSignature;
+        this.argumentDescriptions = Collections.unmodifiableList(Arrays.asList(argumentDescriptions.clone()));
+        this.threadId = threadId;
+        this.timestamp = timestamp;
+    }
+
+    public String getObjectName() {
+        return objectName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * @return the method as described by {@link java.lang.reflect.Method#toString()}.
+     */
+    public String getMethodSignature() {
+        return methodSignature;
+    }
+
+    /**
+     * @return the arguments as they are described in failure messages.
+     */
+    public List<String> getArgumentDescriptions() {
+        return argumentDescriptions;
+    }
+
+    /**
+     * @return the id of the thread that made the invocation.
+     * @see Thread#getId()
+     */
+    public long getThreadId() {
+        return threadId;
+    }
+
+    /**
+     * @return when the invocation was made, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void describeTo(Description description) {
+        description.appendText(objectName);
+        description.appendText(".");
+        description.appendText(methodName);
+        description.appendText("(");
+        for (int i = 0; i < argumentDescriptions.size(); i++) {
+            if (i > 0) {
+                description.appendText(", ");
+            }
+            description.appendText(argumentDescriptions.get(i));
+        }
+        description.appendText(")");
+    }
+}
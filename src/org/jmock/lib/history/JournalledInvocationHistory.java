@@ -0,0 +1,418 @@
+package org.jmock.lib.history;
+
+import static org.jmock.internal.Formatting.invocations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hamcrest.Description;
+import org.hamcrest.StringDescription;
+import org.jmock.api.Invocation;
+import org.jmock.api.InvocationHistory;
+
+/**
+ * An InvocationHistory that keeps every invocation in a memory-mapped file
+ * instead of on the heap, so that long-running tests get a complete history
+ * without running out of memory.
+ *
+ * Each invocation is journalled as the ids of its mock object and method, a
+ * description of each argument, and the id of the calling thread and the time
+ * of the call.  The names of mock objects and methods are journalled once,
+ * the first time they are invoked.  Threads append to the journal without
+ * locking by reserving space for each record with an atomic counter.
+ *
+ * The journal has a fixed capacity.  Once it is full, later invocations are
+ * counted but not journalled.  The journal can be read, while the test is
+ * running or afterwards, with an {@link InvocationJournalReader}.  Failure
+ * reports only describe the most recent invocations in the journal.
+ *
+ * The journal should be {@link #close() closed} when the test has finished
+ * with it, to unmap the file.
+ */
+public class JournalledInvocationHistory implements InvocationHistory {
+    static final int MAGIC = 0x4A4D4B4A; // "JMKJ"
+    static final int VERSION = 2;
+    static final int COMMITTED_END_OFFSET = 8;
+    static final int HEADER_SIZE = 12;
+    static final int RECORD_HEADER_SIZE = 5;
+    static final byte OBJECT_RECORD = 1;
+    static final byte METHOD_RECORD = 2;
+    static final byte INVOCATION_RECORD = 3;
+
+    public static final int DEFAULT_DESCRIBED_INVOCATION_LIMIT = 1000;
+
+    // The reservation holds the end of the reserved space in its low 32 bits
+    private static final long END_MASK = 0xFFFFFFFFL;
+    private static final long FULL = 1L << 32;
+    private static final long CLOSED = 1L << 33;
+
+    private final File file;
+    private final MappedByteBuffer journal;
+    private final int capacity;
+    private final int describedInvocationLimit;
+    private final AtomicLong reservation = new AtomicLong(HEADER_SIZE);
+    private final AtomicInteger committedEnd = new AtomicInteger(HEADER_SIZE);
+    private final AtomicLong unjournalledCount = new AtomicLong(0);
+    private final AtomicInteger nextId = new AtomicInteger(0);
+    private final ConcurrentMap<Object, Integer> objectIds = new ConcurrentHashMap<Object, Integer>();
+    private final ConcurrentMap<Method, Integer> methodIds = new ConcurrentHashMap<Method, Integer>();
+    private final ThreadLocal<RecordBuffer> recordBuffers = new ThreadLocal<RecordBuffer>() {
+        @Override
+        protected RecordBuffer initialValue() {
+            return new RecordBuffer();
+        }
+    };
+    private boolean isClosed = false;
+
+    /**
+     * Creates a journal in the given file, replacing any existing contents.
+     *
+     * @param file
+     *     The file to map into memory.
+     * @param capacity
+     *     The size of the file in bytes.
+     */
+    public JournalledInvocationHistory(File file, int capacity) throws IOException {
+        this(file, capacity, DEFAULT_DESCRIBED_INVOCATION_LIMIT);
+    }
+
+    /**
+     * Creates a journal in the given file, replacing any existing contents.
+     *
+     * @param file
+     *     The file to map into memory.
+     * @param capacity
+     *     The size of the file in bytes.
+     * @param describedInvocationLimit
+     *     How many of the most recent invocations are described in failure
+     *     reports.  Earlier invocations can be read from the file.
+     */
+    public JournalledInvocationHistory(File file, int capacity, int describedInvocationLimit) throws IOException {
+        if (capacity < HEADER_SIZE) {
+            throw new IllegalArgumentException("capacity must be at least " + HEADER_SIZE + " bytes, was " + capacity);
+        }
+        if (describedInvocationLimit < 1) {
+            throw new IllegalArgumentException("described invocation limit must be at least 1, was " + describedInvocationLimit);
+        }
+
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(0);
+            randomAccessFile.setLength(capacity);
+            this.journal = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        finally {
+            randomAccessFile.close();
+        }
+
+        this.file = file;
+        this.capacity = capacity;
+        this.describedInvocationLimit = describedInvocationLimit;
+        journal.putInt(0, MAGIC);
+        journal.putInt(4, VERSION);
+        journal.putInt(COMMITTED_END_OFFSET, HEADER_SIZE);
+    }
+
+    public void record(Invocation invocation) {
+        final int objectId = idOf(invocation.getInvokedObject());
+        final int methodId = idOf(invocation.getInvokedMethod());
+
+        final RecordBuffer record = startRecord(INVOCATION_RECORD);
+        try {
+            record.putInt(objectId);
+            record.putInt(methodId);
+            record.putLong(Thread.currentThread().getId());
+            record.putLong(System.currentTimeMillis());
+            record.putInt(invocation.getParameterCount());
+            for (int i = 0; i < invocation.getParameterCount(); i++) {
+                record.putDescriptionOf(invocation.getParameter(i));
+            }
+
+            if (!append(record)) {
+                unjournalledCount.incrementAndGet();
+            }
+        }
+        finally {
+            record.release();
+        }
+    }
+
+    /**
+     * @return the number of invocations that were not journalled because the
+     *         journal was full or had been closed.
+     */
+    public long getUnjournalledCount() {
+        return unjournalledCount.get();
+    }
+
+    /**
+     * Stops journalling invocations, waits for the invocations that are being
+     * journalled to be written, and unmaps the file.  Invocations recorded
+     * after the journal is closed are counted but not journalled.
+     */
+    public synchronized void close() {
+        if (isClosed) {
+            return;
+        }
+
+        long state;
+        do {
+            state = reservation.get();
+        } while (!reservation.compareAndSet(state, state | CLOSED));
+        awaitCommitOf((int)(state & END_MASK));
+
+        isClosed = true;
+        journal.force();
+        unmap(journal);
+    }
+
+    public synchronized void describeTo(Description description) {
+        if (isClosed) {
+            description.appendText("\n  (the journal in " + file + " has been closed)\n");
+            return;
+        }
+
+        final InvocationJournalReader reader = new InvocationJournalReader(journal.duplicate(), committedEnd.get());
+        final long unjournalled = unjournalledCount.get();
+
+        if (reader.getInvocationCount() == 0 && unjournalled == 0) {
+            description.appendText(" nothing!");
+            return;
+        }
+
+        reader.describeMostRecentTo(description, describedInvocationLimit);
+        if (unjournalled > 0) {
+            description.appendText("\n  (" + invocations(unjournalled) + " after these were not kept because the journal is full)");
+        }
+        description.appendText("\n");
+    }
+
+    private int idOf(Object invokedObject) {
+        final Integer id = objectIds.get(invokedObject);
+        if (id != null) {
+            return id;
+        }
+
+        final Integer newId = nextId.getAndIncrement();
+        final Integer existingId = objectIds.putIfAbsent(invokedObject, newId);
+        if (existingId != null) {
+            return existingId;
+        }
+
+        final RecordBuffer record = startRecord(OBJECT_RECORD);
+        try {
+            record.putInt(newId);
+            record.putString(invokedObject.toString());
+            append(record);
+        }
+        finally {
+            record.release();
+        }
+        return newId;
+    }
+
+    private int idOf(Method method) {
+        final Integer id = methodIds.get(method);
+        if (id != null) {
+            return id;
+        }
+
+        final Integer newId = nextId.getAndIncrement();
+        final Integer existingId = methodIds.putIfAbsent(method, newId);
+        if (existingId != null) {
+            return existingId;
+        }
+
+        final RecordBuffer record = startRecord(METHOD_RECORD);
+        try {
+            record.putInt(newId);
+            record.putString(method.getName());
+            record.putString(method.toString());
+            append(record);
+        }
+        finally {
+            record.release();
+        }
+        return newId;
+    }
+
+    /*
+     * Each thread reuses one buffer to build records in.  Describing an
+     * argument can invoke a mock object, and so journal another invocation
+     * in the same thread, so that invocation is built in a new buffer.
+     */
+    private RecordBuffer startRecord(byte type) {
+        RecordBuffer record = recordBuffers.get();
+        if (record.isInUse) {
+            record = new RecordBuffer();
+        }
+        record.start(type);
+        return record;
+    }
+
+    /*
+     * Once a record does not fit, the journal is marked as full, so that a
+     * smaller record written later cannot refer to one that is missing.
+     */
+    private boolean append(RecordBuffer record) {
+        final ByteBuffer contents = record.finish();
+        final int size = contents.remaining();
+
+        int start;
+        while (true) {
+            final long state = reservation.get();
+            if ((state & (FULL | CLOSED)) != 0) {
+                return false;
+            }
+
+            start = (int)(state & END_MASK);
+            if (start > capacity - size) {
+                if (reservation.compareAndSet(state, state | FULL)) {
+                    return false;
+                }
+            }
+            else if (reservation.compareAndSet(state, state + size)) {
+                break;
+            }
+        }
+
+        final ByteBuffer slot = journal.duplicate();
+        slot.position(start);
+        slot.put(contents);
+        commit(start, start + size);
+        return true;
+    }
+
+    /*
+     * Records are committed in the order in which their space was reserved,
+     * by a volatile write of the end of the last committed record.  A reader
+     * that reads the committed end before the records below it therefore sees
+     * those records completely.  The committed end is also written to the
+     * header of the file, for readers in other processes.
+     */
+    private void commit(int start, int end) {
+        awaitCommitOf(start);
+        journal.putInt(COMMITTED_END_OFFSET, end);
+        committedEnd.set(end);
+    }
+
+    private void awaitCommitOf(int end) {
+        while (committedEnd.get() != end) {
+            Thread.yield();
+        }
+    }
+
+    /*
+     * A mapped file stays mapped until its buffer is garbage collected, unless
+     * it is unmapped through the JVM's internal API.  If that is not available,
+     * the file is left to the garbage collector.
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        try {
+            try {
+                // Java 9 and later
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            }
+            catch (NoSuchMethodException e) {
+                // Java 8 and earlier
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        }
+        catch (Exception e) {
+            // Leave the file mapped until the buffer is garbage collected
+        }
+    }
+
+    private static class RecordBuffer {
+        private final CharsetEncoder utf8 = Charset.forName("UTF-8").newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final StringBuilder text = new StringBuilder();
+        private final Description textDescription = new StringDescription(text);
+        private ByteBuffer bytes = ByteBuffer.allocate(256);
+        public boolean isInUse = false;
+
+        public void start(byte type) {
+            isInUse = true;
+            bytes.clear();
+            bytes.position(4);
+            bytes.put(type);
+        }
+
+        public void putInt(int i) {
+            ensureRemaining(4);
+            bytes.putInt(i);
+        }
+
+        public void putLong(long l) {
+            ensureRemaining(8);
+            bytes.putLong(l);
+        }
+
+        public void putDescriptionOf(Object value) {
+            text.setLength(0);
+            textDescription.appendValue(value);
+            putString(text);
+        }
+
+        public void putString(CharSequence s) {
+            final int lengthPosition = bytes.position();
+            putInt(0);
+
+            final CharBuffer chars = CharBuffer.wrap(s);
+            utf8.reset();
+            while (utf8.encode(chars, bytes, true).isOverflow()) {
+                ensureRemaining(bytes.capacity());
+            }
+            while (utf8.flush(bytes).isOverflow()) {
+                ensureRemaining(bytes.capacity());
+            }
+
+            bytes.putInt(lengthPosition, bytes.position() - lengthPosition - 4);
+        }
+
+        /**
+         * @return the record, with its length written in front of its type.
+         */
+        public ByteBuffer finish() {
+            bytes.putInt(0, bytes.position() - 4);
+            final ByteBuffer record = bytes.duplicate();
+            record.flip();
+            return record;
+        }
+
+        public void release() {
+            isInUse = false;
+        }
+
+        private void ensureRemaining(int count) {
+            if (bytes.remaining() < count) {
+                final ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * bytes.capacity(), bytes.position() + count));
+                bytes.flip();
+                larger.put(bytes);
+                bytes = larger;
+            }
+        }
+    }
+}
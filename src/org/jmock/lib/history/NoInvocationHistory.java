@@ -0,0 +1,31 @@
+package org.jmock.lib.history;
+
+import static org.jmock.internal.Formatting.invocations;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hamcrest.Description;
+import org.jmock.api.Invocation;
+import org.jmock.api.InvocationHistory;
+
+/**
+ * An InvocationHistory that only counts invocations, for tests that make so
+ * many that keeping them would use up the heap.
+ */
+public class NoInvocationHistory implements InvocationHistory {
+    private final AtomicLong invocationCount = new AtomicLong(0);
+
+    public void record(Invocation invocation) {
+        invocationCount.incrementAndGet();
+    }
+
+    public void describeTo(Description description) {
+        final long invocationCount = this.invocationCount.get();
+        if (invocationCount == 0) {
+            description.appendText(" nothing!");
+        }
+        else {
+            description.appendText(" " + invocations(invocationCount) + ", none of which were kept\n");
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.jmock.lib.history;
+
+import static org.jmock.internal.Formatting.invocations;
+
+import org.hamcrest.Description;
+import org.jmock.api.Invocation;
+import org.jmock.api.InvocationHistory;
+
+/**
+ * An InvocationHistory that keeps only the most recent invocations, up to a
+ * fixed limit, and counts the earlier ones that it has forgotten.
+ */
+public class RecentInvocationHistory implements InvocationHistory {
+    private final Invocation[] recent;
+    private int next = 0;
+    private long invocationCount = 0;
+
+    public RecentInvocationHistory(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1, was " + limit);
+        }
+        this.recent = new Invocation[limit];
+    }
+
+    public synchronized void record(Invocation invocation) {
+        recent[next] = invocation;
+        next = (next + 1) % recent.length;
+        invocationCount++;
+    }
+
+    public synchronized void describeTo(Description description) {
+        if (invocationCount == 0) {
+            description.appendText(" nothing!");
+            return;
+        }
+
+        final long forgottenCount = invocationCount - recent.length;
+        if (forgottenCount > 0) {
+            description.appendText("\n  (" + invocations(forgottenCount) + " before these were not kept)");
+        }
+
+        final int start = forgottenCount > 0 ? next : 0;
+        for (int i = 0; i < Math.min(invocationCount, recent.length); i++) {
+            description.appendText("\n  ").appendDescriptionOf(recent[(start + i) % recent.length]);
+        }
+        description.appendText("\n");
+    }
+}
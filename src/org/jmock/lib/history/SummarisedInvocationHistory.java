@@ -0,0 +1,54 @@
+package org.jmock.lib.history;
+
+import static org.jmock.internal.Formatting.times;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hamcrest.Description;
+import org.jmock.api.Invocation;
+import org.jmock.api.InvocationHistory;
+
+/**
+ * An InvocationHistory that keeps only the first of a run of equal, consecutive
+ * invocations and counts how many times it was repeated.
+ * 
+ * This keeps the history of a test small if it makes the same call many times
+ * in a row, such as polling a stub, without losing the order of different calls.
+ */
+public class SummarisedInvocationHistory implements InvocationHistory {
+    private final List<Run> runs = new ArrayList<Run>();
+
+    public synchronized void record(Invocation invocation) {
+        if (!runs.isEmpty() && runs.get(runs.size() - 1).invocation.equals(invocation)) {
+            runs.get(runs.size() - 1).count++;
+        }
+        else {
+            runs.add(new Run(invocation));
+        }
+    }
+
+    public synchronized void describeTo(Description description) {
+        if (runs.isEmpty()) {
+            description.appendText(" nothing!");
+            return;
+        }
+
+        for (Run run : runs) {
+            description.appendText("\n  ").appendDescriptionOf(run.invocation);
+            if (run.count > 1) {
+                description.appendText(" (" + times(run.count) + " in a row)");
+            }
+        }
+        description.appendText("\n");
+    }
+
+    private static class Run {
+        public final Invocation invocation;
+        public long count = 1;
+
+        public Run(Invocation invocation) {
+            this.invocation = invocation;
+        }
+    }
+}
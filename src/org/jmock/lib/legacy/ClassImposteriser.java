@@ -1,6 +1,7 @@
 package org.jmock.lib.legacy;
 
 import net.sf.cglib.core.CodeGenerationException;
+import net.sf.cglib.core.DefaultGeneratorStrategy;
 import net.sf.cglib.core.DefaultNamingPolicy;
 import net.sf.cglib.core.NamingPolicy;
 import net.sf.cglib.core.Predicate;
@@ -8,22 +9,39 @@ import net.sf.cglib.proxy.*;
 import org.jmock.api.Imposteriser;
 import org.jmock.api.Invocation;
 import org.jmock.api.Invokable;
+import org.jmock.api.PreparingImposteriser;
+import org.jmock.internal.ReflectionCache;
 import org.jmock.internal.SearchingClassLoader;
 import org.objenesis.Objenesis;
 import org.objenesis.ObjenesisStd;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+
+import static java.lang.Thread.currentThread;
 
 /**
  * This class lets you imposterise abstract and concrete classes 
  * <em>without</em> calling the constructors of the mocked class.
+ * 
+ * Before generating a proxy class, the ClassImposteriser looks for one that
+ * was generated ahead of time by the {@link ImposterPregenerator} and is
+ * on the classpath.  The pregenerated proxy class of a type that is not
+ * public or that has package-private methods is only used if it is loaded
+ * by the class loader of the type.
  *   
  * @author npryce
  */
-public class ClassImposteriser implements Imposteriser {
+public class ClassImposteriser implements PreparingImposteriser {
     public static final Imposteriser INSTANCE = new ClassImposteriser();
     
     private ClassImposteriser() {}
@@ -49,6 +67,8 @@ public class ClassImposteriser implements Imposteriser {
     };
     
     private final Objenesis objenesis = new ObjenesisStd();
+    private final ReflectionCache<Class<?>> proxyClasses = new ReflectionCache<Class<?>>();
+    private final ReflectionCache<Set<String>> pregeneratedTypeNames = new ReflectionCache<Set<String>>();
     
     public boolean canImposterise(Class<?> type) {
         return !type.isPrimitive() && 
@@ -70,6 +90,14 @@ public class ClassImposteriser implements Imposteriser {
         }
 	}
     
+    public void prepare(Class<?> mockedType, Class<?>... ancilliaryTypes) {
+        if (!mockedType.isInterface() && toStringMethodIsFinal(mockedType)) {
+            throw new IllegalArgumentException(mockedType.getName() + " has a final toString method");
+        }
+        
+        proxyClass(mockedType, ancilliaryTypes);
+    }
+    
     private boolean toStringMethodIsFinal(Class<?> type) {
         try {
             Method toString = type.getMethod("toString");
@@ -90,10 +118,201 @@ public class ClassImposteriser implements Imposteriser {
         }
     }
     
-    private Class<?> proxyClass(Class<?> possibleMockedType, Class<?>... ancilliaryTypes) {
-        final Class<?> mockedType =
-            possibleMockedType == Object.class ? ClassWithSuperclassToWorkAroundCglibBug.class : possibleMockedType;
+    private Class<?> proxyClass(Class<?> mockedType, Class<?>... ancilliaryTypes) {
+        // The class loader that the proxy class is defined in depends on the
+        // loaders of the proxied types and on the context class loader.
+        final Object[] key = new Object[ancilliaryTypes.length+2];
+        key[0] = mockedType;
+        System.arraycopy(ancilliaryTypes, 0, key, 1, ancilliaryTypes.length);
+        key[key.length-1] = currentThread().getContextClassLoader();
+        
+        Class<?> proxyClass = proxyClasses.get(key);
+        if (proxyClass == null) {
+            proxyClass = findPregeneratedProxyClass(mockedType, ancilliaryTypes);
+            if (proxyClass == null) {
+                proxyClass = createProxyClass(mockedType, ancilliaryTypes);
+            }
+            proxyClasses.put(proxyClass, key);
+        }
+        return proxyClass;
+    }
+    
+    private Class<?> findPregeneratedProxyClass(Class<?> possibleMockedType, Class<?>... ancilliaryTypes) {
+        final Class<?> mockedType = superTypeFor(possibleMockedType);
+        final ClassLoader loader = SearchingClassLoader.combineLoadersOf(mockedType, ancilliaryTypes);
+        if (!pregeneratedTypeNamesIn(loader).contains(mockedType.getName())) {
+            return null;
+        }
+        
+        final Class<?> proxyClass;
+        try {
+            proxyClass = Class.forName(PregeneratedClassName.of(mockedType, ancilliaryTypes), true, loader);
+        }
+        catch (ClassNotFoundException e) {
+            return null;
+        }
+        catch (LinkageError e) {
+            // Pregenerated against types that have since changed or that are
+            // loaded by a different class loader
+            return null;
+        }
+        catch (SecurityException e) {
+            // Loaded into a package that has since been signed or sealed
+            return null;
+        }
+        
+        return isProxyClassFor(proxyClass, mockedType, ancilliaryTypes) ? proxyClass : null;
+    }
+    
+    private Set<String> pregeneratedTypeNamesIn(ClassLoader loader) {
+        Set<String> typeNames = pregeneratedTypeNames.get(loader);
+        if (typeNames == null) {
+            typeNames = readPregeneratedTypeNames(loader);
+            pregeneratedTypeNames.put(typeNames, loader);
+        }
+        return typeNames;
+    }
+    
+    private static Set<String> readPregeneratedTypeNames(ClassLoader loader) {
+        final Set<String> typeNames = new HashSet<String>();
+        try {
+            final Enumeration<URL> indexes = loader.getResources(PregeneratedClassName.INDEX);
+            while (indexes.hasMoreElements()) {
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(indexes.nextElement().openStream(), "UTF-8"));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.trim().length() > 0) {
+                            typeNames.add(line.trim());
+                        }
+                    }
+                }
+                finally {
+                    reader.close();
+                }
+            }
+        }
+        catch (IOException e) {
+            // Generate the proxy classes of the types that could not be read
+        }
+        return typeNames;
+    }
+    
+    private static boolean isProxyClassFor(Class<?> proxyClass, Class<?> mockedType, Class<?>... ancilliaryTypes) {
+        if (!Factory.class.isAssignableFrom(proxyClass) || !mockedType.isAssignableFrom(proxyClass)) {
+            return false;
+        }
+        if (!packageNameOf(proxyClass).equals(packageNameOf(mockedType))) {
+            return false;
+        }
+        if (proxyClass.getClassLoader() != mockedType.getClassLoader() && !isAccessibleFromOtherRuntimePackages(mockedType)) {
+            // The proxy class cannot override the package-private methods
+            // of a type in a different runtime package
+            return false;
+        }
+        for (Class<?> ancilliaryType : ancilliaryTypes) {
+            if (!ancilliaryType.isAssignableFrom(proxyClass)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private Class<?> createProxyClass(Class<?> possibleMockedType, Class<?>... ancilliaryTypes) {
+        final Class<?> mockedType = superTypeFor(possibleMockedType);
         
+        final Enhancer enhancer = enhancerFor(mockedType, ancilliaryTypes);
+        if (mockedType.getSigners() != null) {
+            enhancer.setNamingPolicy(NAMING_POLICY_THAT_ALLOWS_IMPOSTERISATION_OF_CLASSES_IN_SIGNED_PACKAGES);
+        }
+        
+        try {
+            return enhancer.createClass();
+        }
+        catch (CodeGenerationException e) {
+            // Note: I've only been able to manually test this.  It exists to help people writing
+            //       Eclipse plug-ins or using other environments that have sophisticated class loader
+            //       structures.
+            throw new IllegalArgumentException("could not imposterise " + mockedType, e);
+        }
+    }
+    
+    /**
+     * Generates the bytecode of a proxy class so that it can be saved and
+     * loaded in a later run.  The class itself is defined in a class loader
+     * that is then discarded.
+     */
+    static byte[] generateProxyClass(final String className, Class<?> possibleMockedType, Class<?>... ancilliaryTypes) {
+        final Class<?> mockedType = superTypeFor(possibleMockedType);
+        
+        final Enhancer enhancer = enhancerFor(mockedType, ancilliaryTypes);
+        enhancer.setClassLoader(new ClassLoader(SearchingClassLoader.combineLoadersOf(mockedType, ancilliaryTypes)) {});
+        enhancer.setUseCache(false);
+        enhancer.setNamingPolicy(new NamingPolicy() {
+            public String getClassName(String prefix, String source, Object key, Predicate names) {
+                return className;
+            }
+        });
+        final BytecodeRecordingStrategy strategy = new BytecodeRecordingStrategy();
+        enhancer.setStrategy(strategy);
+        
+        try {
+            enhancer.createClass();
+        }
+        catch (CodeGenerationException e) {
+            throw new IllegalArgumentException("could not imposterise " + mockedType, e);
+        }
+        catch (LinkageError e) {
+            throw new IllegalArgumentException("could not imposterise " + mockedType, e);
+        }
+        return strategy.bytecode;
+    }
+    
+    /**
+     * @return true if a proxy class can be pregenerated in the package of the mocked type
+     *         and loaded from a different JAR file.
+     */
+    static boolean canPregenerateProxyClassFor(Class<?> possibleMockedType) {
+        final Class<?> mockedType = superTypeFor(possibleMockedType);
+        final Package mockedPackage = mockedType.getPackage();
+        
+        return !packageNameOf(mockedType).startsWith("java.")
+            && mockedType.getSigners() == null
+            && (mockedPackage == null || !mockedPackage.isSealed());
+    }
+    
+    private static boolean isAccessibleFromOtherRuntimePackages(Class<?> mockedType) {
+        if (!Modifier.isPublic(mockedType.getModifiers())) {
+            return false;
+        }
+        if (mockedType.isInterface()) {
+            return true;
+        }
+        
+        for (Class<?> c = mockedType; c != null; c = c.getSuperclass()) {
+            if (packageNameOf(c).equals(packageNameOf(mockedType))) {
+                for (Method method : c.getDeclaredMethods()) {
+                    final int modifiers = method.getModifiers();
+                    if ((modifiers & (Modifier.PUBLIC|Modifier.PROTECTED|Modifier.PRIVATE|Modifier.STATIC|Modifier.FINAL)) == 0) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    private static String packageNameOf(Class<?> type) {
+        final String className = type.getName();
+        final int lastDot = className.lastIndexOf('.');
+        return lastDot < 0 ? "" : className.substring(0, lastDot);
+    }
+    
+    static Class<?> superTypeFor(Class<?> possibleMockedType) {
+        return possibleMockedType == Object.class ? ClassWithSuperclassToWorkAroundCglibBug.class : possibleMockedType;
+    }
+    
+    private static Enhancer enhancerFor(Class<?> mockedType, Class<?>... ancilliaryTypes) {
         final Enhancer enhancer = new Enhancer() {
             @Override
             @SuppressWarnings("unchecked")
@@ -113,19 +332,7 @@ public class ClassImposteriser implements Imposteriser {
         }
         enhancer.setCallbackTypes(new Class[]{InvocationHandler.class, NoOp.class});
         enhancer.setCallbackFilter(IGNORED_METHODS);
-        if (mockedType.getSigners() != null) {
-            enhancer.setNamingPolicy(NAMING_POLICY_THAT_ALLOWS_IMPOSTERISATION_OF_CLASSES_IN_SIGNED_PACKAGES);
-        }
-        
-        try {
-            return enhancer.createClass();
-        }
-        catch (CodeGenerationException e) {
-            // Note: I've only been able to manually test this.  It exists to help people writing
-            //       Eclipse plug-ins or using other environments that have sophisticated class loader
-            //       structures.
-            throw new IllegalArgumentException("could not imposterise " + mockedType, e);
-        }
+        return enhancer;
     }
     
     private Object proxy(Class<?> proxyClass, final Invokable mockObject) {
@@ -141,7 +348,7 @@ public class ClassImposteriser implements Imposteriser {
         return proxy;
     }
     
-    private Class<?>[] prepend(Class<?> first, Class<?>... rest) {
+    private static Class<?>[] prepend(Class<?> first, Class<?>... rest) {
         Class<?>[] all = new Class<?>[rest.length+1];
         all[0] = first;
         System.arraycopy(rest, 0, all, 1, rest.length);
@@ -156,5 +363,15 @@ public class ClassImposteriser implements Imposteriser {
         }
     }
     
+    private static class BytecodeRecordingStrategy extends DefaultGeneratorStrategy {
+        public byte[] bytecode;
+        
+        @Override
+        protected byte[] transform(byte[] b) {
+            bytecode = b;
+            return b;
+        }
+    }
+    
     public static class ClassWithSuperclassToWorkAroundCglibBug {}
 }
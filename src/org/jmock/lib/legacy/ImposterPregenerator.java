@@ -0,0 +1,129 @@
+package org.jmock.lib.legacy;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.jmock.internal.CaptureControl;
+
+/**
+ * Generates the proxy classes of the {@link ClassImposteriser} ahead of time
+ * and saves them in a JAR file.
+ *
+ * When the JAR file is on the classpath of the tests, the ClassImposteriser
+ * loads the saved proxy classes instead of generating them, which saves time
+ * when the tests start.  A saved proxy class is ignored if the type it proxies
+ * has changed since it was generated.
+ *
+ * Each proxy class is saved in the package of the type it proxies, so that it
+ * can override the type's package-private methods.  Types that cannot have
+ * classes added to their package from another JAR file, such as signed types,
+ * are skipped.
+ *
+ * The <code>pregenerate.imposters</code> target of jMock's Ant build file shows
+ * how to run the generator over compiled tests:
+ *
+ * <pre>java org.jmock.lib.legacy.ImposterPregenerator <i>jarFile</i> <i>classDirectory</i>...</pre>
+ *
+ * The mocked types found by the {@link MockedTypeScanner} are loaded from the
+ * classpath of the generator.
+ */
+public class ImposterPregenerator {
+    private final Map<String, byte[]> proxyClasses = new LinkedHashMap<String, byte[]>();
+    private final Set<String> mockedTypeNames = new LinkedHashSet<String>();
+
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: java " + ImposterPregenerator.class.getName() + " jarFile classDirectory...");
+            System.exit(1);
+        }
+
+        final MockedTypeScanner scanner = new MockedTypeScanner();
+        for (int i = 1; i < args.length; i++) {
+            scanner.scanDirectory(new File(args[i]));
+        }
+
+        final ImposterPregenerator pregenerator = new ImposterPregenerator();
+        for (String typeName : scanner.getMockedTypeNames()) {
+            try {
+                pregenerator.addMockedType(Class.forName(typeName, false, ImposterPregenerator.class.getClassLoader()));
+            }
+            catch (ClassNotFoundException e) {
+                System.err.println("skipping " + typeName + ": not on the classpath");
+            }
+            catch (IllegalArgumentException e) {
+                System.err.println("skipping " + typeName + ": " + e.getMessage());
+            }
+        }
+
+        pregenerator.writeJar(new File(args[0]));
+        System.out.println("saved " + pregenerator.getProxyClassCount() + " proxy classes in " + args[0]);
+    }
+
+    /**
+     * Generates the proxy classes that a {@link org.jmock.Mockery} needs to
+     * mock the given type, if the ClassImposteriser can imposterise it and
+     * the proxy classes can be added to the type's package.
+     */
+    public void addMockedType(Class<?> mockedType) {
+        if (ClassImposteriser.INSTANCE.canImposterise(mockedType) && ClassImposteriser.canPregenerateProxyClassFor(mockedType)) {
+            addProxyClass(mockedType, CaptureControl.class);
+            addProxyClass(mockedType);
+        }
+    }
+
+    /**
+     * Generates a proxy class for the given types.
+     */
+    public void addProxyClass(Class<?> mockedType, Class<?>... ancilliaryTypes) {
+        if (!ClassImposteriser.canPregenerateProxyClassFor(mockedType)) {
+            throw new IllegalArgumentException("cannot add a proxy class to the package of " + mockedType.getName());
+        }
+
+        final Class<?> superType = ClassImposteriser.superTypeFor(mockedType);
+        final String className = PregeneratedClassName.of(superType, ancilliaryTypes);
+        if (!proxyClasses.containsKey(className)) {
+            proxyClasses.put(className, ClassImposteriser.generateProxyClass(className, mockedType, ancilliaryTypes));
+            mockedTypeNames.add(superType.getName());
+        }
+    }
+
+    public int getProxyClassCount() {
+        return proxyClasses.size();
+    }
+
+    public void writeJar(File jarFile) throws IOException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile), manifest);
+        try {
+            for (Map.Entry<String, byte[]> proxyClass : proxyClasses.entrySet()) {
+                out.putNextEntry(new JarEntry(proxyClass.getKey().replace('.', '/') + ".class"));
+                out.write(proxyClass.getValue());
+                out.closeEntry();
+            }
+
+            out.putNextEntry(new JarEntry(PregeneratedClassName.INDEX));
+            final Writer index = new OutputStreamWriter(out, "UTF-8");
+            for (String mockedTypeName : mockedTypeNames) {
+                index.write(mockedTypeName + "\n");
+            }
+            index.flush();
+            out.closeEntry();
+        }
+        finally {
+            out.close();
+        }
+    }
+}
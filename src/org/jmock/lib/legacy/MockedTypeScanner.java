@@ -0,0 +1,179 @@
+package org.jmock.lib.legacy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.sf.cglib.asm.AnnotationVisitor;
+import net.sf.cglib.asm.Attribute;
+import net.sf.cglib.asm.ClassAdapter;
+import net.sf.cglib.asm.ClassReader;
+import net.sf.cglib.asm.ClassWriter;
+import net.sf.cglib.asm.FieldVisitor;
+import net.sf.cglib.asm.Label;
+import net.sf.cglib.asm.MethodAdapter;
+import net.sf.cglib.asm.MethodVisitor;
+import net.sf.cglib.asm.Type;
+
+/**
+ * Finds the types that compiled tests mock, so that proxy classes for them can
+ * be generated ahead of time.
+ *
+ * A type is mocked if it is the type of a field annotated with
+ * {@link org.jmock.auto.Mock} or if a class literal of the type is passed
+ * directly to a <code>mock</code> method, such as {@link org.jmock.Mockery#mock(Class)}
+ * or {@link org.jmock.Mockery#mock(Class, String)}.
+ */
+public class MockedTypeScanner {
+    private static final String MOCK_ANNOTATION = "Lorg/jmock/auto/Mock;";
+    private static final String MOCK_METHOD = "mock";
+    private static final String MOCK_DESCRIPTOR = "(Ljava/lang/Class;)Ljava/lang/Object;";
+    private static final String NAMED_MOCK_DESCRIPTOR = "(Ljava/lang/Class;Ljava/lang/String;)Ljava/lang/Object;";
+
+    private final Set<String> mockedTypeNames = new TreeSet<String>();
+
+    /**
+     * @return the names of the mocked types found so far, in alphabetical order.
+     */
+    public Set<String> getMockedTypeNames() {
+        return Collections.unmodifiableSet(mockedTypeNames);
+    }
+
+    /**
+     * Scans all the class files in a directory and its subdirectories.
+     */
+    public void scanDirectory(File directory) throws IOException {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("cannot list files in " + directory);
+        }
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                scanDirectory(file);
+            }
+            else if (file.getName().endsWith(".class")) {
+                final InputStream in = new FileInputStream(file);
+                try {
+                    scan(in);
+                }
+                finally {
+                    in.close();
+                }
+            }
+        }
+    }
+
+    public void scan(InputStream classFile) throws IOException {
+        // ASM 3 has no visitors that ignore what they are not interested in, so
+        // the scanner passes everything else on to a class writer that is discarded
+        new ClassReader(classFile).accept(new ScanningClassVisitor(), ClassReader.SKIP_DEBUG);
+    }
+
+    private void addMockedType(Type type) {
+        if (type.getSort() == Type.OBJECT) {
+            mockedTypeNames.add(type.getClassName());
+        }
+    }
+
+    private class ScanningClassVisitor extends ClassAdapter {
+        public ScanningClassVisitor() {
+            super(new ClassWriter(0));
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, final String desc, String signature, Object value) {
+            return new FieldVisitor() {
+                public AnnotationVisitor visitAnnotation(String annotationDesc, boolean visible) {
+                    if (annotationDesc.equals(MOCK_ANNOTATION)) {
+                        addMockedType(Type.getType(desc));
+                    }
+                    return null;
+                }
+
+                public void visitAttribute(Attribute attr) {}
+
+                public void visitEnd() {}
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            return new ScanningMethodVisitor(super.visitMethod(access, name, desc, signature, exceptions));
+        }
+    }
+
+    /**
+     * Looks for class literals loaded immediately before a call to a mock
+     * method, skipping over the literal name of the mock, if there is one.
+     */
+    private class ScanningMethodVisitor extends MethodAdapter {
+        private Type classLiteral = null;
+
+        public ScanningMethodVisitor(MethodVisitor mv) {
+            super(mv);
+        }
+
+        @Override
+        public void visitLdcInsn(Object constant) {
+            if (constant instanceof Type) {
+                classLiteral = (Type)constant;
+            }
+            else if (!(constant instanceof String)) {
+                classLiteral = null;
+            }
+            super.visitLdcInsn(constant);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String desc) {
+            if (classLiteral != null && name.equals(MOCK_METHOD)
+                && (desc.equals(MOCK_DESCRIPTOR) || desc.equals(NAMED_MOCK_DESCRIPTOR)))
+            {
+                addMockedType(classLiteral);
+            }
+            classLiteral = null;
+            super.visitMethodInsn(opcode, owner, name, desc);
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            classLiteral = null;
+            super.visitInsn(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            classLiteral = null;
+            super.visitIntInsn(opcode, operand);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            classLiteral = null;
+            super.visitVarInsn(opcode, var);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            classLiteral = null;
+            super.visitTypeInsn(opcode, type);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+            classLiteral = null;
+            super.visitFieldInsn(opcode, owner, name, desc);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            classLiteral = null;
+            super.visitJumpInsn(opcode, label);
+        }
+    }
+}
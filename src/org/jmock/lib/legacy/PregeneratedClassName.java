@@ -0,0 +1,62 @@
+package org.jmock.lib.legacy;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Names the proxy classes that are generated ahead of time.
+ *
+ * The name includes a fingerprint of the methods of the proxied types, so
+ * that a proxy class generated for an earlier version of a type is not
+ * mistaken for one that overrides all the methods of the current version.
+ * The proxy class is in the package of the mocked type, so that it can
+ * override the type's package-private methods.
+ *
+ * The names of the mocked types that have pregenerated proxy classes are
+ * listed, one per line, in the {@link #INDEX} resources on the classpath,
+ * so that the names of other types need not be worked out.
+ */
+class PregeneratedClassName {
+    public static final String INDEX = "META-INF/jmock/pregenerated-imposters.txt";
+
+    private static final String SEPARATOR = "$$PregeneratedByJMock$$";
+
+    private PregeneratedClassName() {}
+
+    public static String of(Class<?> mockedType, Class<?>... ancilliaryTypes) {
+        final SortedSet<String> signatures = new TreeSet<String>();
+        final Set<Class<?>> visited = new HashSet<Class<?>>();
+
+        int fingerprint = mockedType.getName().hashCode();
+        addSignaturesOf(mockedType, signatures, visited);
+        for (Class<?> ancilliaryType : ancilliaryTypes) {
+            fingerprint = 31*fingerprint + ancilliaryType.getName().hashCode();
+            addSignaturesOf(ancilliaryType, signatures, visited);
+        }
+        for (String signature : signatures) {
+            fingerprint = 31*fingerprint + signature.hashCode();
+        }
+
+        return mockedType.getName() + SEPARATOR + Integer.toHexString(fingerprint);
+    }
+
+    private static void addSignaturesOf(Class<?> type, Set<String> signatures, Set<Class<?>> visited) {
+        if (type == null || !visited.add(type)) {
+            return;
+        }
+
+        for (Method method : type.getDeclaredMethods()) {
+            if (!Modifier.isPrivate(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())) {
+                signatures.add(method.toString());
+            }
+        }
+        addSignaturesOf(type.getSuperclass(), signatures, visited);
+        for (Class<?> interfaceType : type.getInterfaces()) {
+            addSignaturesOf(interfaceType, signatures, visited);
+        }
+    }
+}
@@ -5,9 +5,13 @@ import org.hamcrest.Matcher;
 
 public interface CardinalityClause {
     ReceiverClause exactly(int count);
+    ReceiverClause exactly(long count);
     ReceiverClause atLeast(int count);
+    ReceiverClause atLeast(long count);
     ReceiverClause between(int minCount, int maxCount);
+    ReceiverClause between(long minCount, long maxCount);
     ReceiverClause atMost(int count);
+    ReceiverClause atMost(long count);
     
     <T> T oneOf(T mockObject);
     
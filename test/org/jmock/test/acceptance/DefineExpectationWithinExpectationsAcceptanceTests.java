@@ -1,7 +1,10 @@
 package org.jmock.test.acceptance;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertThat;
 import junit.framework.TestCase;
 
+import org.hamcrest.StringDescription;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 
@@ -9,6 +12,7 @@ import org.jmock.Mockery;
 public class DefineExpectationWithinExpectationsAcceptanceTests extends TestCase {
     public interface MockedTypeA {
         void a(MockedTypeB b);
+        MockedTypeB b();
     }
     
     public interface MockedTypeB {
@@ -44,4 +48,42 @@ public class DefineExpectationWithinExpectationsAcceptanceTests extends TestCase
             oneOf (a).a(aNewMockWithExpectations());
         }});
     }
+    
+    public void testCanDefineExpectationsOfTheSameMockObjectWithinExpectations() {
+        context.checking(new Expectations() {{
+            oneOf (a).a(aMockReturnedBy(a));
+        }});
+        
+        MockedTypeB b = a.b();
+        a.a(b);
+        context.assertIsSatisfied();
+    }
+    
+    public void testCanIgnoreTheSameMockObjectWithinExpectations() {
+        context.checking(new Expectations() {{
+            oneOf (a).a(aMockIgnoring(a));
+        }});
+        
+        assertThat(StringDescription.toString(context), containsString("expected once, never invoked: a.a(<mockedTypeB>)"));
+    }
+    
+    private MockedTypeB aMockReturnedBy(final MockedTypeA a) {
+        final MockedTypeB mock = context.mock(MockedTypeB.class);
+        
+        context.checking(new Expectations() {{
+            oneOf (a).b(); will(returnValue(mock));
+        }});
+        
+        return mock;
+    }
+    
+    private MockedTypeB aMockIgnoring(final MockedTypeA a) {
+        final MockedTypeB mock = context.mock(MockedTypeB.class);
+        
+        context.checking(new Expectations() {{
+            ignoring (a);
+        }});
+        
+        return mock;
+    }
 }
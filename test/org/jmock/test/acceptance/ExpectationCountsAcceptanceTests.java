@@ -22,6 +22,21 @@ public class ExpectationCountsAcceptanceTests extends TestCase {
         assertAnotherInvocationFailsTheTest();
     }
     
+    public void testCountsExpectationsThatAreNotYetSatisfied() {
+        context.checking(new Expectations() {{
+            exactly(2).of (mock).doSomething();
+            allowing (mock).doSomethingWith("x");
+        }});
+        
+        assertEquals(1, context.unsatisfiedExpectationCount());
+        assertEquals(1, context.unsatisfiedExpectations().size());
+        mock.doSomething();
+        assertEquals(1, context.unsatisfiedExpectationCount());
+        mock.doSomething();
+        assertEquals(0, context.unsatisfiedExpectationCount());
+        assertTrue(context.unsatisfiedExpectations().isEmpty());
+    }
+    
     public void testExpectsExactly() {
         context.checking(new Expectations() {{
             exactly(2).of (mock).doSomething();
@@ -3,6 +3,7 @@ package org.jmock.test.acceptance;
 import junit.framework.TestCase;
 
 import org.jmock.Mockery;
+import org.jmock.api.Imposteriser;
 import org.jmock.lib.legacy.ClassImposteriser;
 
 public class FinalizerIsIgnoredAcceptanceTests extends TestCase {
@@ -14,7 +15,7 @@ public class FinalizerIsIgnoredAcceptanceTests extends TestCase {
     }
     
     Mockery mockery = new Mockery() {{
-        setImposteriser(ClassImposteriser.INSTANCE);
+        setImposteriser(imposteriser());
     }};
     
     ClassWithFinalizer mock = mockery.mock(ClassWithFinalizer.class, "mock");
@@ -22,4 +23,8 @@ public class FinalizerIsIgnoredAcceptanceTests extends TestCase {
     public void testIgnoresFinalizerInMockedClasses() throws Throwable {
         mock.finalize();
     }
+    
+    protected Imposteriser imposteriser() {
+        return ClassImposteriser.INSTANCE;
+    }
 }
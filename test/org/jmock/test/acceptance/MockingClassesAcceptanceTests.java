@@ -2,6 +2,7 @@ package org.jmock.test.acceptance;
 
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.jmock.api.Imposteriser;
 import org.jmock.lib.legacy.ClassImposteriser;
 
 import junit.framework.TestCase;
@@ -13,10 +14,18 @@ public class MockingClassesAcceptanceTests extends TestCase {
         public FinalClass returnInstanceOfFinalClass() {
             return null;
         }
+        
+        String packagePrivateMethod() {
+            return "real";
+        }
+        
+        public final String callPackagePrivateMethod() {
+            return packagePrivateMethod();
+        }
     }
     
     Mockery context = new Mockery() {{
-        setImposteriser(ClassImposteriser.INSTANCE);
+        setImposteriser(imposteriser());
     }};
     
     ClassToMock mock = context.mock(ClassToMock.class);
@@ -32,5 +41,17 @@ public class MockingClassesAcceptanceTests extends TestCase {
         
         assertSame(result, mock.returnInstanceOfFinalClass());
     }
+    
+    public void testCanMockPackagePrivateMethods() {
+        context.checking(new Expectations() {{
+            oneOf (mock).packagePrivateMethod(); will(returnValue("mocked"));
+        }});
+        
+        assertEquals("mocked", mock.callPackagePrivateMethod());
+    }
+    
+    protected Imposteriser imposteriser() {
+        return ClassImposteriser.INSTANCE;
+    }
 }
 
@@ -4,13 +4,14 @@ import junit.framework.TestCase;
 
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.jmock.api.Imposteriser;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
 
 
 public class MockingImplementationOfGenericTypeAcceptanceTests extends TestCase {
     private Mockery context = new JUnit4Mockery() {{
-        setImposteriser(ClassImposteriser.INSTANCE);
+        setImposteriser(imposteriser());
     }};
     
     public void testWhenDefinedAndInvokedThroughClass() throws Exception {
@@ -46,6 +47,10 @@ public class MockingImplementationOfGenericTypeAcceptanceTests extends TestCase
         mock.doSomethingWith("a");
     }
 
+    protected Imposteriser imposteriser() {
+        return ClassImposteriser.INSTANCE;
+    }
+
     public interface AnInterface<T> {
         void doSomethingWith(T arg);
     }
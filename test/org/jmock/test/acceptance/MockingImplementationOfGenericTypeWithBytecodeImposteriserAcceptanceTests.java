@@ -0,0 +1,11 @@
+package org.jmock.test.acceptance;
+
+import org.jmock.api.Imposteriser;
+import org.jmock.lib.bytecode.BytecodeImposteriser;
+
+public class MockingImplementationOfGenericTypeWithBytecodeImposteriserAcceptanceTests extends MockingImplementationOfGenericTypeAcceptanceTests {
+    @Override
+    protected Imposteriser imposteriser() {
+        return BytecodeImposteriser.INSTANCE;
+    }
+}
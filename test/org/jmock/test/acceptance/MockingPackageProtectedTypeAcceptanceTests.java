@@ -8,6 +8,7 @@ import junit.framework.TestCase;
 
 import org.jmock.Mockery;
 import org.jmock.internal.CaptureControl;
+import org.jmock.lib.bytecode.BytecodeImposteriser;
 import org.jmock.lib.legacy.ClassImposteriser;
 
 
@@ -35,4 +36,9 @@ public class MockingPackageProtectedTypeAcceptanceTests extends TestCase {
         mockery.setImposteriser(ClassImposteriser.INSTANCE);
         mockery.mock(PackageProtectedType.class, "mock");
     }
+    
+    public void testCanMockPackageProtectedTypeWithBytecodeImposteriser() {
+        mockery.setImposteriser(BytecodeImposteriser.INSTANCE);
+        mockery.mock(PackageProtectedType.class, "mock");
+    }
 }
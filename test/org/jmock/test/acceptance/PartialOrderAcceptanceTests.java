@@ -0,0 +1,199 @@
+package org.jmock.test.acceptance;
+
+import junit.framework.TestCase;
+
+import org.hamcrest.StringDescription;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.PartialOrder;
+import org.jmock.api.ExpectationError;
+import org.jmock.test.unit.support.AssertThat;
+
+public class PartialOrderAcceptanceTests extends TestCase {
+    public interface Protocol {
+        void step(int i);
+    }
+
+    Mockery context = new Mockery();
+    MockedType mock = context.mock(MockedType.class, "mock");
+
+    public void testCanConstrainAnInvocationToOccurAfterAllOfSeveralOthers() {
+        final PartialOrder p = context.partialOrder("p");
+
+        context.checking(new Expectations() {{
+            oneOf (mock).method1(); inPartialOrder(p.step("A"));
+            oneOf (mock).method2(); inPartialOrder(p.step("B"));
+            oneOf (mock).method3(); inPartialOrder(p.step("C").after("A", "B"));
+        }});
+
+        mock.method2();
+        try {
+            mock.method3();
+            fail("should have thrown ExpectationError");
+        }
+        catch (ExpectationError e) {
+            // expected
+        }
+    }
+
+    public void testAllowsInvocationsThatDoNotDependOnEachOtherInAnyOrder() {
+        final PartialOrder p = context.partialOrder("p");
+
+        context.checking(new Expectations() {{
+            oneOf (mock).method1(); inPartialOrder(p.step("A"));
+            oneOf (mock).method2(); inPartialOrder(p.step("B"));
+            oneOf (mock).method3(); inPartialOrder(p.step("C").after("A", "B"));
+        }});
+
+        mock.method2();
+        mock.method1();
+        mock.method3();
+
+        context.assertIsSatisfied();
+    }
+
+    public void testCanConstrainAnInvocationToOccurAfterAnyOfSeveralOthers() {
+        final PartialOrder p = context.partialOrder("p");
+
+        context.checking(new Expectations() {{
+            oneOf (mock).method1(); inPartialOrder(p.step("A"));
+            oneOf (mock).method2(); inPartialOrder(p.step("B"));
+            oneOf (mock).method4(); inPartialOrder(p.step("D").afterAnyOf("A", "B"));
+        }});
+
+        mock.method2();
+        mock.method4();
+    }
+
+    public void testDoesNotAllowAnInvocationBeforeAnyOfTheOthersItCanFollow() {
+        final PartialOrder p = context.partialOrder("p");
+
+        context.checking(new Expectations() {{
+            oneOf (mock).method1(); inPartialOrder(p.step("A"));
+            oneOf (mock).method2(); inPartialOrder(p.step("B"));
+            oneOf (mock).method4(); inPartialOrder(p.step("D").afterAnyOf("A", "B"));
+        }});
+
+        try {
+            mock.method4();
+            fail("should have thrown ExpectationError");
+        }
+        catch (ExpectationError e) {
+            // expected
+        }
+    }
+
+    public void testCanSkipAllowedSteps() {
+        final PartialOrder p = context.partialOrder("p");
+
+        context.checking(new Expectations() {{
+            oneOf (mock).method1(); inPartialOrder(p.step("A"));
+            allowing (mock).method2(); inPartialOrder(p.step("B").after("A"));
+            oneOf (mock).method3(); inPartialOrder(p.step("C").after("B"));
+        }});
+
+        mock.method1();
+        mock.method3();
+    }
+
+    public void testCanOnlyFollowStepsThatHaveAlreadyBeenAdded() {
+        final PartialOrder p = context.partialOrder("p");
+
+        try {
+            context.checking(new Expectations() {{
+                oneOf (mock).method1(); inPartialOrder(p.step("A").after("B"));
+            }});
+            fail("should have thrown IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            AssertThat.stringIncludes("should name missing step", "no step called B", e.getMessage());
+        }
+    }
+
+    public void testStepsMustFollowAtLeastOneStep() {
+        final PartialOrder p = context.partialOrder("p");
+
+        try {
+            p.step("A").after();
+            fail("should have thrown IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            AssertThat.stringIncludes("should name step", "step A of partial order p must follow at least one step", e.getMessage());
+        }
+
+        try {
+            p.step("A").afterAnyOf();
+            fail("should have thrown IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            AssertThat.stringIncludes("should name step", "step A of partial order p must follow at least one step", e.getMessage());
+        }
+    }
+
+    public void testCanFollowAnyOfStepsThatAreAlreadySatisfied() {
+        final PartialOrder p = context.partialOrder("p");
+
+        context.checking(new Expectations() {{
+            allowing (mock).method1(); inPartialOrder(p.step("A"));
+            oneOf (mock).method2(); inPartialOrder(p.step("B"));
+            oneOf (mock).method4(); inPartialOrder(p.step("D").afterAnyOf("A", "B"));
+        }});
+
+        mock.method4();
+    }
+
+    public void testDoesNotAllowTwoStepsWithTheSameName() {
+        final PartialOrder p = context.partialOrder("p");
+
+        try {
+            context.checking(new Expectations() {{
+                oneOf (mock).method1(); inPartialOrder(p.step("A"));
+                oneOf (mock).method2(); inPartialOrder(p.step("A"));
+            }});
+            fail("should have thrown IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            AssertThat.stringIncludes("should name duplicate step", "already has a step called A", e.getMessage());
+        }
+    }
+
+    public void testExpectationIncludesStepAndPredecessorsInDescription() {
+        final PartialOrder p = context.partialOrder("p");
+
+        context.checking(new Expectations() {{
+            oneOf (mock).method1(); inPartialOrder(p.step("A"));
+            oneOf (mock).method2(); inPartialOrder(p.step("B"));
+            oneOf (mock).method3(); inPartialOrder(p.step("C").after("A", "B"));
+            oneOf (mock).method4(); inPartialOrder(p.step("D").afterAnyOf("A", "B", "C"));
+        }});
+
+        String description = StringDescription.toString(context);
+        AssertThat.stringIncludes("should describe step", "as step A of partial order p", description);
+        AssertThat.stringIncludes("should describe predecessors", "as step C of partial order p after A and B", description);
+        AssertThat.stringIncludes("should describe alternative predecessors", "as step D of partial order p after A, B or C", description);
+    }
+
+    public void testChecksOrderOfLargeRecordedProtocols() {
+        final int stepCount = 20000;
+        final PartialOrder p = context.partialOrder("p");
+        final Protocol protocol = context.mock(Protocol.class, "protocol");
+
+        // Each pair of steps can occur in either order, after both steps of the previous pair
+        context.checking(new Expectations() {{
+            oneOf (protocol).step(0); inPartialOrder(p.step("0"));
+            oneOf (protocol).step(1); inPartialOrder(p.step("1"));
+            for (int i = 2; i < stepCount; i++) {
+                int pair = i - i % 2;
+                oneOf (protocol).step(i); inPartialOrder(p.step(Integer.toString(i))
+                                                           .after(Integer.toString(pair - 2), Integer.toString(pair - 1)));
+            }
+        }});
+
+        for (int i = 0; i < stepCount; i += 2) {
+            protocol.step(i + 1);
+            protocol.step(i);
+        }
+
+        context.assertIsSatisfied();
+    }
+}
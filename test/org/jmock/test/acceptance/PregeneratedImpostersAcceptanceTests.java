@@ -0,0 +1,57 @@
+package org.jmock.test.acceptance;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+
+import org.jmock.Mockery;
+import org.jmock.api.ExpectationError;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.jmock.lib.legacy.ImposterPregenerator;
+import org.jmock.test.unit.support.AssertThat;
+
+public class PregeneratedImpostersAcceptanceTests extends TestCase {
+    Mockery mockery = new Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    
+    URL testdataJar;
+    File jarFile;
+    
+    @Override
+    public void setUp() throws Exception {
+        testdataJar = new URL("file:build/testdata/unsigned.jar");
+        jarFile = File.createTempFile("imposters", ".jar");
+        
+        ImposterPregenerator pregenerator = new ImposterPregenerator();
+        pregenerator.addMockedType(new URLClassLoader(new URL[]{testdataJar}, null).loadClass("ClassWithPackagePrivateMethod"));
+        pregenerator.writeJar(jarFile);
+    }
+    
+    @Override
+    public void tearDown() {
+        jarFile.delete();
+    }
+    
+    public void testMocksPackagePrivateMethodsWithPregeneratedProxyClasses() throws Exception {
+        ClassLoader classLoader = new URLClassLoader(new URL[]{testdataJar, jarFile.toURI().toURL()},
+                                                     ClassImposteriser.class.getClassLoader());
+        Class<?> mockedType = classLoader.loadClass("ClassWithPackagePrivateMethod");
+        
+        Object mock = mockery.mock(mockedType, "mock");
+        
+        AssertThat.stringIncludes("should use pregenerated proxy class",
+                                  "$$PregeneratedByJMock$$", mock.getClass().getName());
+        try {
+            mockedType.getMethod("callPackagePrivateMethod").invoke(mock);
+            fail("should have thrown ExpectationError");
+        }
+        catch (InvocationTargetException e) {
+            assertTrue("should have mocked package-private method",
+                       e.getCause() instanceof ExpectationError);
+        }
+    }
+}
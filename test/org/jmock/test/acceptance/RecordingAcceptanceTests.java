@@ -10,6 +10,7 @@ import org.hamcrest.text.StringContainsInOrder;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.api.ExpectationError;
+import org.jmock.lib.history.RecentInvocationHistory;
 
 public class RecordingAcceptanceTests extends TestCase {
     Mockery context = new Mockery();
@@ -104,6 +105,29 @@ public class RecordingAcceptanceTests extends TestCase {
         }
     }
     
+    public void testReportsWhatTheInvocationHistoryHasKept() {
+        context.setInvocationHistory(new RecentInvocationHistory(1));
+        context.checking(new Expectations() {{
+            allowing (mock).doSomethingWith("x");
+            oneOf (mock).doSomethingWith("y");
+        }});
+        
+        mock.doSomethingWith("x");
+        mock.doSomethingWith("x");
+        
+        try {
+            context.assertIsSatisfied();
+            fail("should not be satisfied");
+        }
+        catch (ExpectationError e) {
+            assertThat(asString(e), containsInOrder(
+                "what happened before this:",
+                "1 invocation before these were not kept",
+                "mock.doSomethingWith(\"x\")"
+            ));
+        }
+    }
+    
     private Matcher<? super String> containsInOrder(String... strings) {
         return new StringContainsInOrder(asList(strings));
     }
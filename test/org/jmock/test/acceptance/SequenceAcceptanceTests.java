@@ -55,6 +55,28 @@ public class SequenceAcceptanceTests extends TestCase {
         mock.method3();
     }
     
+    public void testKeepsCheckingOrderAsInvocationsProgressThroughTheSequence() {
+        final Sequence s = context.sequence("s");
+        
+        context.checking(new Expectations() {{
+            oneOf (mock).method1(); inSequence(s);
+            allowing (mock).method2(); inSequence(s);
+            oneOf (mock).method3(); inSequence(s);
+            oneOf (mock).method4(); inSequence(s);
+        }});
+        
+        mock.method1();
+        mock.method2();
+        
+        try {
+            mock.method4();
+            fail("should have thrown ExpectationError");
+        }
+        catch (ExpectationError e) {
+            // expected
+        }
+    }
+    
     public void testSequencesAreIndependentOfOneAnother() {
         final Sequence s = context.sequence("s");
         final Sequence t = context.sequence("t");
@@ -0,0 +1,91 @@
+package org.jmock.test.benchmark;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jmock.api.Imposteriser;
+import org.jmock.api.Invocation;
+import org.jmock.api.Invokable;
+import org.jmock.internal.CaptureControl;
+import org.jmock.lib.JavaReflectionImposteriser;
+import org.jmock.lib.bytecode.BytecodeImposteriser;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.jmock.test.unit.support.SyntheticEmptyInterfaceClassLoader;
+
+/**
+ * Measures how quickly imposterisers create imposters of the same interface,
+ * how many distinct proxy classes they generate while doing so, and how
+ * quickly the imposters pass invocations to the mock object.
+ *
+ * The interface mocked when creating imposters is loaded by its own class
+ * loader, as it would be in an IDE plug-in or an application server, so that
+ * the imposterisers must combine class loaders to define their proxy classes.
+ *
+ * Run from the command line with jMock and its dependencies on the classpath:
+ * <pre>java org.jmock.test.benchmark.ImposteriserBenchmark [imposterCount [invocationCount]]</pre>
+ */
+public class ImposteriserBenchmark {
+    public interface Adder {
+        int add(int a, int b);
+    }
+
+    private static final Invokable NULL_INVOKABLE = new Invokable() {
+        public Object invoke(Invocation invocation) throws Throwable {
+            return null;
+        }
+    };
+
+    private static final Invokable ADDING_INVOKABLE = new Invokable() {
+        public Object invoke(Invocation invocation) throws Throwable {
+            return (Integer)invocation.getParameter(0) + (Integer)invocation.getParameter(1);
+        }
+    };
+
+    public static void main(String[] args) throws ClassNotFoundException {
+        final int imposterCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final int invocationCount = args.length > 1 ? Integer.parseInt(args[1]) : 10000000;
+        final Class<?> mockedType = new SyntheticEmptyInterfaceClassLoader().loadClass("MockedType");
+
+        run("JavaReflectionImposteriser", JavaReflectionImposteriser.INSTANCE, mockedType, imposterCount, invocationCount);
+        run("ClassImposteriser", ClassImposteriser.INSTANCE, mockedType, imposterCount, invocationCount);
+        run("BytecodeImposteriser", BytecodeImposteriser.INSTANCE, mockedType, imposterCount, invocationCount);
+    }
+
+    private static void run(String name, Imposteriser imposteriser, Class<?> mockedType, int imposterCount, int invocationCount) {
+        createImposters(imposteriser, mockedType, imposterCount); // warm up
+
+        long start = System.nanoTime();
+        final Set<Class<?>> proxyClasses = createImposters(imposteriser, mockedType, imposterCount);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(name + ": " + imposterCount + " imposters in " + (elapsed / 1000000) + "ms"
+                           + " (" + (elapsed / imposterCount) + "ns each), "
+                           + proxyClasses.size() + " distinct proxy class(es)");
+
+        final Adder adder = imposteriser.imposterise(ADDING_INVOKABLE, Adder.class);
+        invoke(adder, invocationCount); // warm up
+
+        start = System.nanoTime();
+        final int result = invoke(adder, invocationCount);
+        elapsed = System.nanoTime() - start;
+
+        System.out.println(name + ": " + invocationCount + " invocations in " + (elapsed / 1000000) + "ms"
+                           + " (" + (elapsed / invocationCount) + "ns each, result " + result + ")");
+    }
+
+    private static Set<Class<?>> createImposters(Imposteriser imposteriser, Class<?> mockedType, int imposterCount) {
+        final Set<Class<?>> proxyClasses = new HashSet<Class<?>>();
+        for (int i = 0; i < imposterCount; i++) {
+            proxyClasses.add(imposteriser.imposterise(NULL_INVOKABLE, mockedType, CaptureControl.class).getClass());
+        }
+        return proxyClasses;
+    }
+
+    private static int invoke(Adder adder, int invocationCount) {
+        int result = 0;
+        for (int i = 0; i < invocationCount; i++) {
+            result = adder.add(result, 1);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package org.jmock.test.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hamcrest.Matcher;
+import org.jmock.api.Invocation;
+import org.jmock.internal.matcher.AllParametersMatcher;
+
+/**
+ * Measures how quickly, and with how much allocation, an {@link AllParametersMatcher}
+ * matches the parameters of an invocation, as it does for every candidate
+ * expectation of every invocation of a mock object.
+ *
+ * Allocation is measured with the per-thread allocation counter of the HotSpot
+ * JVM.  It is not reported on JVMs that do not provide one.
+ *
+ * Run from the command line with jMock and its dependencies on the classpath:
+ * <pre>java org.jmock.test.benchmark.ParameterMatchingBenchmark [matchCount]</pre>
+ */
+public class ParameterMatchingBenchmark {
+    public interface Calculator {
+        int add(int a, long b, String c);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int matchCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        final Invocation invocation = new Invocation(new Object(),
+            Calculator.class.getMethod("add", int.class, long.class, String.class), 1, 2L, "three");
+
+        run("equal primitive and object parameters",
+            new AllParametersMatcher(new Object[]{1, 2L, "three"}), invocation, matchCount);
+
+        final List<Matcher<?>> matchers = new ArrayList<Matcher<?>>();
+        matchers.add(org.hamcrest.Matchers.greaterThan(0));
+        matchers.add(org.hamcrest.Matchers.anything());
+        matchers.add(org.hamcrest.Matchers.equalTo("three"));
+        run("explicit parameter matchers", new AllParametersMatcher(matchers), invocation, matchCount);
+    }
+
+    private static void run(String name, AllParametersMatcher matcher, Invocation invocation, int matchCount) throws Exception {
+        match(matcher, invocation, matchCount); // warm up
+
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        final int matched = match(matcher, invocation, matchCount);
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.println(name + ": " + matched + " of " + matchCount + " matches in " + (elapsed / 1000000) + "ms"
+                           + " (" + (elapsed / matchCount) + "ns each"
+                           + (allocated < 0 ? "" : ", " + ((double)allocated / matchCount) + " bytes allocated each")
+                           + ")");
+    }
+
+    private static int match(AllParametersMatcher matcher, Invocation invocation, int matchCount) {
+        final List<Object> parameters = invocation.getParameters();
+        int matched = 0;
+        for (int i = 0; i < matchCount; i++) {
+            if (matcher.matches(parameters)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static long allocatedBytes() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        try {
+            final Method getThreadAllocatedBytes = threads.getClass().getMethod("getThreadAllocatedBytes", long.class);
+            getThreadAllocatedBytes.setAccessible(true);
+            return (Long)getThreadAllocatedBytes.invoke(threads, Thread.currentThread().getId());
+        }
+        catch (Exception e) {
+            return -1;
+        }
+    }
+}
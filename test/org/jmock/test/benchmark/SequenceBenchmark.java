@@ -0,0 +1,54 @@
+package org.jmock.test.benchmark;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.Sequence;
+
+/**
+ * Measures how quickly a Mockery dispatches the invocations of a long recorded
+ * protocol, in which every step is expected once and in order in a single
+ * {@link Sequence}.
+ *
+ * Run from the command line with jMock and its dependencies on the classpath:
+ * <pre>java org.jmock.test.benchmark.SequenceBenchmark [stepCount...]</pre>
+ */
+public class SequenceBenchmark {
+    public interface Protocol {
+        void step(int i);
+    }
+
+    public static void main(String[] args) {
+        final int[] stepCounts = args.length > 0 ? new int[args.length] : new int[]{1000, 10000, 50000};
+        for (int i = 0; i < args.length; i++) {
+            stepCounts[i] = Integer.parseInt(args[i]);
+        }
+
+        run(stepCounts[0]); // warm up
+        for (int stepCount : stepCounts) {
+            run(stepCount);
+        }
+    }
+
+    private static void run(final int stepCount) {
+        final Mockery context = new Mockery();
+        final Protocol protocol = context.mock(Protocol.class, "protocol");
+        final Sequence steps = context.sequence("steps");
+
+        context.checking(new Expectations() {{
+            for (int i = 0; i < stepCount; i++) {
+                oneOf (protocol).step(i); inSequence(steps);
+            }
+        }});
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < stepCount; i++) {
+            protocol.step(i);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        context.assertIsSatisfied();
+
+        System.out.println(stepCount + " steps in sequence: " + (elapsed / 1000000) + "ms"
+                           + " (" + (elapsed / stepCount) + "ns each)");
+    }
+}
@@ -2,7 +2,11 @@ package org.jmock.test.unit;
 
 import junit.framework.TestCase;
 
+import org.hamcrest.StringDescription;
+import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.jmock.test.acceptance.MockedType;
+import org.jmock.test.unit.support.AssertThat;
 import org.jmock.test.unit.support.DummyInterface;
 
 public class MockeryTests extends TestCase {
@@ -25,4 +29,54 @@ public class MockeryTests extends TestCase {
         assertEquals("secondMock", 
                      mockery.mock(AnotherInterface.class, "secondMock").toString());
     }
+    
+    public void testReusesTheSameImposterToCaptureEachExpectationOfAMockObject() {
+        Mockery mockery = new Mockery();
+        final MockedType mock = mockery.mock(MockedType.class);
+        final Object[] capturingImposters = new Object[2];
+        
+        mockery.checking(new Expectations() {{
+            MockedType first = oneOf(mock);
+            first.method1();
+            MockedType second = oneOf(mock);
+            second.method2();
+            
+            capturingImposters[0] = first;
+            capturingImposters[1] = second;
+        }});
+        
+        assertSame(capturingImposters[0], capturingImposters[1]);
+        
+        mock.method1();
+        mock.method2();
+        mockery.assertIsSatisfied();
+    }
+    
+    public void testReusesTheCapturingImposterAfterIgnoringAMockObject() {
+        Mockery mockery = new Mockery();
+        final MockedType mock = mockery.mock(MockedType.class);
+        final Object[] capturingImposters = new Object[3];
+        
+        mockery.checking(new Expectations() {{
+            capturingImposters[0] = ignoring(mock);
+            MockedType second = oneOf(mock);
+            second.method1();
+            
+            capturingImposters[1] = second;
+        }});
+        
+        mockery.checking(new Expectations() {{
+            MockedType third = oneOf(mock);
+            third.method2();
+            
+            capturingImposters[2] = third;
+        }});
+        
+        assertSame(capturingImposters[0], capturingImposters[1]);
+        assertSame(capturingImposters[0], capturingImposters[2]);
+        
+        String description = StringDescription.toString(mockery);
+        AssertThat.stringIncludes("should capture first expectation", "mockedType.method1()", description);
+        AssertThat.stringIncludes("should capture second expectation", "mockedType.method2()", description);
+    }
 }
@@ -51,6 +51,26 @@ public class InvocationTests extends TestCase {
                      Arrays.asList(ARG_VALUES), Arrays.asList(invocation.getParametersAsArray()));
     }
 
+    public void testProvidesAnUnmodifiableViewOfTheParameterValues() {
+        Invocation invocation = new Invocation(INVOKED, method, ARG_VALUES);
+
+        assertEquals("parameter values", Arrays.asList(ARG_VALUES), invocation.getParameters());
+        assertSame("should return the same view each time", invocation.getParameters(), invocation.getParameters());
+        try {
+            invocation.getParameters().set(0, "modified");
+            fail("should not be able to modify parameter values");
+        }
+        catch (UnsupportedOperationException expected) {}
+    }
+
+    public void testReturnsACopyOfTheParameterValuesAsAnArray() {
+        Invocation invocation = new Invocation(INVOKED, method, ARG_VALUES);
+
+        invocation.getParametersAsArray()[0] = "modified";
+
+        assertEquals("parameter values", Arrays.asList(ARG_VALUES), Arrays.asList(invocation.getParametersAsArray()));
+    }
+
     public void testConstructorInterpretsNullParameterValueArrayAsZeroArguments() {
         Invocation invocation = new Invocation(INVOKED, method);
 
@@ -203,6 +223,26 @@ public class InvocationTests extends TestCase {
         invocation.checkReturnTypeCompatibility(new Integer(0));
     }
 
+    public void testReturnTypeCheckAllowsReturningEachBoxedTypeOnlyFromMethodWithItsPrimitiveReturnType() {
+        Class<?>[] primitiveTypes = {boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class};
+        Object[] boxedValues = {false, (byte)0, '\0', (short)0, 0, 0L, 0.0F, 0.0};
+        
+        for (int i = 0; i < primitiveTypes.length; i++) {
+            Invocation invocation = 
+                new Invocation(INVOKED, methodFactory.newMethodReturning(primitiveTypes[i]));
+            
+            for (int j = 0; j < boxedValues.length; j++) {
+                try {
+                    invocation.checkReturnTypeCompatibility(boxedValues[j]);
+                    assertEquals("should only allow " + boxedValues[j].getClass() + " to be returned as " + primitiveTypes[i], i, j);
+                }
+                catch (IllegalStateException ex) {
+                    assertTrue("should allow " + boxedValues[j].getClass() + " to be returned as " + primitiveTypes[i], i != j);
+                }
+            }
+        }
+    }
+
     public void testReturnTypeCheckAllowsReturningNullFromMethodWithNonPrimitiveReturnType() {
         Invocation invocation = 
             new Invocation(INVOKED, methodFactory.newMethodReturning(String.class));
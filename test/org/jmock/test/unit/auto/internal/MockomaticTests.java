@@ -4,6 +4,11 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.jmock.Mockery;
@@ -83,4 +88,25 @@ public class MockomaticTests extends TestCase {
         assertThat("named sequence after field", 
                    example.aSequence.toString(), equalTo("aSequence"));
     }
+    
+    public void testPreparesToMockTheTypesOfAllMockFieldsBeforeCreatingTheMockObjects() {
+        final List<Class<?>> preparedTypes = new ArrayList<Class<?>>();
+        Mockery preparingMockery = new Mockery() {
+            @Override
+            public void prepare(Class<?>... typesToMock) {
+                preparedTypes.addAll(Arrays.asList(typesToMock));
+            }
+            
+            @Override
+            public <T> T mock(Class<T> typeToMock, String name) {
+                assertFalse("should have prepared before mocking", preparedTypes.isEmpty());
+                return super.mock(typeToMock, name);
+            }
+        };
+        
+        DerivedClass example = new DerivedClass();
+        new Mockomatic(preparingMockery).fillIn(example);
+        
+        assertEquals(Arrays.<Class<?>>asList(MockedType.class, MockedType.class), preparedTypes);
+    }
 }
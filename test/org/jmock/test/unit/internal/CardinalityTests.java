@@ -62,5 +62,29 @@ public class CardinalityTests extends TestCase {
         assertFalse(cardinality.allowsMoreInvocations(3));
         assertTrue(cardinality.isSatisfied(3));
     }
+    
+    public void testCountsBeyondTheRangeOfAnInt() {
+        Cardinality cardinality = Cardinality.between(3000000000L, 4000000000L);
+        
+        assertFalse(cardinality.isSatisfied(2999999999L));
+        assertTrue(cardinality.isSatisfied(3000000000L));
+        assertTrue(cardinality.allowsMoreInvocations(3999999999L));
+        assertFalse(cardinality.allowsMoreInvocations(4000000000L));
+        
+        assertEquals("expected 3,000,000,000 to 4,000,000,000 times",
+                     StringDescription.toString(cardinality));
+    }
+    
+    public void testHasNoMaximumIfItAllowsUnlimitedInvocations() {
+        assertTrue(Cardinality.atLeast(1).allowsUnlimitedInvocations());
+        assertTrue(Cardinality.atLeast(1).allowsMoreInvocations(Integer.MAX_VALUE + 1L));
+        assertFalse(Cardinality.atMost(Integer.MAX_VALUE + 1L).allowsUnlimitedInvocations());
+    }
+    
+    public void testTreatsAnIntMaximumOfIntegerMaxValueAsUnlimited() {
+        assertTrue(Cardinality.atMost(Integer.MAX_VALUE).allowsUnlimitedInvocations());
+        assertTrue(Cardinality.between(2, Integer.MAX_VALUE).allowsUnlimitedInvocations());
+        assertFalse(Cardinality.atMost((long)Integer.MAX_VALUE).allowsUnlimitedInvocations());
+    }
 
 }
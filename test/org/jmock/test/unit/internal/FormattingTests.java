@@ -12,4 +12,13 @@ public class FormattingTests extends TestCase {
         assertEquals("2 times", Formatting.times(2));
         assertEquals("99 times", Formatting.times(99));
     }
+    
+    public void testGroupsTheDigitsOfLargeCountsInThrees() {
+        assertEquals("999", Formatting.count(999));
+        assertEquals("1,000", Formatting.count(1000));
+        assertEquals("123,456,789", Formatting.count(123456789));
+        assertEquals("3,000,000,000 times", Formatting.times(3000000000L));
+        assertEquals("9,223,372,036,854,775,807 invocations", Formatting.invocations(Long.MAX_VALUE));
+        assertEquals("-1,000", Formatting.count(-1000));
+    }
 }
@@ -0,0 +1,120 @@
+package org.jmock.test.unit.internal;
+
+import static java.lang.Thread.currentThread;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.jmock.api.Invokable;
+import org.jmock.api.PreparingImposteriser;
+import org.jmock.internal.CaptureControl;
+import org.jmock.internal.ImposterPreparation;
+
+public class ImposterPreparationTests extends TestCase {
+    ImposterPreparation preparation = new ImposterPreparation();
+    RecordingImposteriser imposteriser = new RecordingImposteriser();
+
+    public void testPreparesTheImposteriserForMockObjectsAndExpectationCaptureOnAnotherThread() throws InterruptedException {
+        preparation.prepare(imposteriser, Runnable.class);
+        awaitStartOfPreparation();
+        preparation.awaitPreparationOf(Runnable.class);
+
+        assertEquals(Arrays.<Object>asList(Arrays.<Class<?>>asList(Runnable.class, CaptureControl.class),
+                                           Arrays.<Class<?>>asList(Runnable.class)),
+                     imposteriser.preparedTypes());
+        assertNotSame(currentThread(), imposteriser.preparingThread);
+    }
+
+    public void testPreparesTheImposteriserWithTheContextClassLoaderOfTheCallingThread() throws InterruptedException {
+        preparation.prepare(imposteriser, Runnable.class);
+        awaitStartOfPreparation();
+        preparation.awaitPreparationOf(Runnable.class);
+
+        assertSame(currentThread().getContextClassLoader(), imposteriser.preparingContextClassLoader);
+    }
+
+    public void testDoesNotPrepareTypesThatTheImposteriserCannotImposterise() {
+        preparation.prepare(imposteriser, String.class);
+        preparation.awaitPreparationOf(String.class);
+
+        assertTrue(imposteriser.preparedTypes().isEmpty());
+    }
+
+    public void testWaitsForAPreparationThatHasStartedToFinish() throws InterruptedException {
+        imposteriser.delayMillis = 50;
+
+        preparation.prepare(imposteriser, Runnable.class);
+        awaitStartOfPreparation();
+        preparation.awaitPreparationOf(Runnable.class);
+
+        assertEquals(2, imposteriser.preparedTypes().size());
+    }
+
+    public void testIgnoresPreparationsThatFail() {
+        imposteriser.failure = new IllegalArgumentException("cannot prepare");
+
+        preparation.prepare(imposteriser, Runnable.class);
+        preparation.awaitPreparationOf(Runnable.class);
+    }
+
+    public void testDoesNotWaitForTypesThatAreNotBeingPrepared() {
+        preparation.awaitPreparationOf(Runnable.class);
+
+        assertTrue(imposteriser.preparedTypes().isEmpty());
+    }
+
+    private void awaitStartOfPreparation() throws InterruptedException {
+        assertTrue("preparation should have started", imposteriser.started.await(5, TimeUnit.SECONDS));
+    }
+
+    private static class RecordingImposteriser implements PreparingImposteriser {
+        private final List<List<Class<?>>> preparedTypes = new ArrayList<List<Class<?>>>();
+        public final CountDownLatch started = new CountDownLatch(1);
+        public volatile long delayMillis = 0;
+        public volatile RuntimeException failure = null;
+        public volatile Thread preparingThread;
+        public volatile ClassLoader preparingContextClassLoader;
+
+        public boolean canImposterise(Class<?> type) {
+            return type.isInterface();
+        }
+
+        public <T> T imposterise(Invokable mockObject, Class<T> mockedType, Class<?>... ancilliaryTypes) {
+            throw new UnsupportedOperationException("not used");
+        }
+
+        public void prepare(Class<?> mockedType, Class<?>... ancilliaryTypes) {
+            preparingThread = currentThread();
+            preparingContextClassLoader = currentThread().getContextClassLoader();
+            started.countDown();
+
+            if (failure != null) {
+                throw failure;
+            }
+            try {
+                Thread.sleep(delayMillis);
+            }
+            catch (InterruptedException e) {
+                currentThread().interrupt();
+            }
+
+            final List<Class<?>> types = new ArrayList<Class<?>>();
+            types.add(mockedType);
+            types.addAll(Arrays.asList(ancilliaryTypes));
+            synchronized (preparedTypes) {
+                preparedTypes.add(types);
+            }
+        }
+
+        public List<List<Class<?>>> preparedTypes() {
+            synchronized (preparedTypes) {
+                return new ArrayList<List<Class<?>>>(preparedTypes);
+            }
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package org.jmock.test.unit.internal;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
 import junit.framework.TestCase;
 
+import org.jmock.api.Expectation;
 import org.jmock.api.ExpectationError;
 import org.jmock.api.Invocation;
+import org.jmock.internal.Cardinality;
 import org.jmock.internal.InvocationDispatcher;
+import org.jmock.internal.InvocationExpectation;
+import org.jmock.internal.matcher.MethodMatcher;
+import org.jmock.internal.matcher.MockObjectMatcher;
+import org.jmock.lib.action.ReturnValueAction;
 import org.jmock.test.unit.support.MethodFactory;
 import org.jmock.test.unit.support.MockExpectation;
 
@@ -15,6 +24,11 @@ public class InvocationDispatcherTests extends TestCase {
 		methodFactory.newMethod("invokedMethod"),
 		Invocation.NO_PARAMETERS);
 	
+	Invocation query = new Invocation(
+	    "invokedObject",
+	    methodFactory.newMethod("query", MethodFactory.NO_ARGUMENTS, String.class, MethodFactory.NO_EXCEPTIONS),
+	    Invocation.NO_PARAMETERS);
+	
 	static final boolean NOT_RELEVANT = true;
 	
     public void testInvokesFirstMatchingExpectationInGroup() throws Throwable {
@@ -85,4 +99,78 @@ public class InvocationDispatcherTests extends TestCase {
         assertFalse("should not be satisfied if no expectations are satisfied",
                     dispatcherNone.isSatisfied());
     }
+
+    public void testInvokesFirstMatchingExpectationWhenExpectationsForSpecificMethodsAndAnyMethodsAreInterleaved() throws Throwable {
+        Method method = query.getInvokedMethod();
+        Method anotherMethod = methodFactory.newMethod("anotherMethod", MethodFactory.NO_ARGUMENTS, String.class, MethodFactory.NO_EXCEPTIONS);
+        
+        InvocationDispatcher dispatcher = new InvocationDispatcher();
+        dispatcher.add(expectationOf(query.getInvokedObject(), anotherMethod, "other method"));
+        dispatcher.add(new MockExpectation(false, NOT_RELEVANT, NOT_RELEVANT));
+        MockExpectation anyMethod = new MockExpectation(true, NOT_RELEVANT, NOT_RELEVANT);
+        anyMethod.invokeResult = "any method";
+        dispatcher.add(anyMethod);
+        dispatcher.add(expectationOf(query.getInvokedObject(), method, "specific method"));
+        
+        assertEquals("any method", dispatcher.dispatch(query));
+        
+        InvocationDispatcher dispatcherWithSpecificFirst = new InvocationDispatcher();
+        dispatcherWithSpecificFirst.add(expectationOf(query.getInvokedObject(), method, "specific method"));
+        dispatcherWithSpecificFirst.add(anyMethod);
+        
+        assertEquals("specific method", dispatcherWithSpecificFirst.dispatch(query));
+    }
+    
+    public void testOnlyInvokesExpectationsForSpecificMockObjectsWhenInvokedOnThatMockObject() throws Throwable {
+        Method method = query.getInvokedMethod();
+        
+        InvocationDispatcher dispatcher = new InvocationDispatcher();
+        dispatcher.add(expectationOf(new String("anotherObject"), method, "wrong object"));
+        dispatcher.add(expectationOf(query.getInvokedObject(), method, "right object"));
+        
+        assertEquals("right object", dispatcher.dispatch(query));
+        
+        try {
+            dispatcher.dispatch(new Invocation(new String("invokedObject"), method, Invocation.NO_PARAMETERS));
+            fail("should have thrown ExpectationError");
+        }
+        catch (ExpectationError e) {
+            // expected
+        }
+    }
+    
+    public void testKeepsTrackOfUnsatisfiedExpectationsAsTheyAreInvoked() throws Throwable {
+        InvocationExpectation once = expectationOf(invocation.getInvokedObject(), invocation.getInvokedMethod(), null);
+        once.setCardinality(Cardinality.exactly(1));
+        InvocationExpectation allowed = expectationOf(query.getInvokedObject(), query.getInvokedMethod(), "result");
+        MockExpectation unsatisfiedMockExpectation = new MockExpectation(false, false, NOT_RELEVANT);
+        
+        InvocationDispatcher dispatcher = new InvocationDispatcher();
+        dispatcher.add(unsatisfiedMockExpectation);
+        dispatcher.add(allowed);
+        dispatcher.add(once);
+        
+        assertEquals("unsatisfied count", 2, dispatcher.getUnsatisfiedCount());
+        assertEquals("unsatisfied expectations", 
+                     Arrays.<Expectation>asList(unsatisfiedMockExpectation, once), dispatcher.getUnsatisfiedExpectations());
+        
+        dispatcher.dispatch(invocation);
+        
+        assertEquals("unsatisfied count after invocation", 1, dispatcher.getUnsatisfiedCount());
+        assertEquals("unsatisfied expectations after invocation", 
+                     Arrays.<Expectation>asList(unsatisfiedMockExpectation), dispatcher.getUnsatisfiedExpectations());
+        
+        unsatisfiedMockExpectation.isSatisfied = true;
+        
+        assertEquals("unsatisfied count after all satisfied", 0, dispatcher.getUnsatisfiedCount());
+        assertTrue("should be satisfied", dispatcher.isSatisfied());
+    }
+    
+    private InvocationExpectation expectationOf(Object mockObject, Method method, Object result) {
+        InvocationExpectation expectation = new InvocationExpectation();
+        expectation.setObjectMatcher(new MockObjectMatcher(mockObject));
+        expectation.setMethodMatcher(new MethodMatcher(method));
+        expectation.setAction(new ReturnValueAction(result));
+        return expectation;
+    }
 }
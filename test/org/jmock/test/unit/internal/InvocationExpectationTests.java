@@ -17,6 +17,7 @@ import org.jmock.internal.InvocationExpectation;
 import org.jmock.internal.OrderingConstraint;
 import org.jmock.internal.SideEffect;
 import org.jmock.internal.matcher.AllParametersMatcher;
+import org.jmock.internal.matcher.MockObjectMatcher;
 import org.jmock.lib.action.ReturnValueAction;
 import org.jmock.test.unit.support.AssertThat;
 import org.jmock.test.unit.support.MethodFactory;
@@ -192,6 +193,28 @@ public class InvocationExpectationTests extends TestCase {
         }
     }
     
+    public void testFailsIfActionReturnsAnIncompatibleValueAfterReturningCompatibleValues() throws Throwable {
+        final Method stringReturningMethod = methodFactory.newMethod("tester", new Class[0], String.class, new Class[0]);
+        final Method intReturningMethod = methodFactory.newMethod("tester", new Class[0], int.class, new Class[0]);
+        expectation.setAction(new ReturnValueAction("a string"));
+        expectation.invoke(new Invocation(targetObject, stringReturningMethod, Invocation.NO_PARAMETERS));
+        
+        try {
+            expectation.invoke(new Invocation(targetObject, intReturningMethod, Invocation.NO_PARAMETERS));
+            fail("Should have thrown an IllegalStateException");
+        } catch (IllegalStateException expected) {
+            AssertThat.stringIncludes("Shows returned type", "java.lang.String", expected.getMessage());
+        }
+        
+        expectation.setAction(new ReturnValueAction(new Integer(666)));
+        try {
+            expectation.invoke(new Invocation(targetObject, stringReturningMethod, Invocation.NO_PARAMETERS));
+            fail("Should have thrown an IllegalStateException");
+        } catch (IllegalStateException expected) {
+            AssertThat.stringIncludes("Shows returned type", "java.lang.Integer", expected.getMessage());
+        }
+    }
+    
     /**
      * @see CardinalityTests.testHasARequiredAndMaximumNumberOfExpectedInvocations
      */
@@ -210,6 +233,53 @@ public class InvocationExpectationTests extends TestCase {
         assertTrue(expectation.isSatisfied());
     }
     
+    public void testIsConfinedToAMockObjectIfItNamesTheMockObjectAndMethod() {
+        assertFalse("should not be confined by default", expectation.isConfinedToMockObject());
+        
+        expectation.setObjectMatcher(new MockObjectMatcher(targetObject));
+        assertFalse("should not be confined without a method", expectation.isConfinedToMockObject());
+        
+        expectation.setMethod(method);
+        assertTrue("should be confined", expectation.isConfinedToMockObject());
+    }
+    
+    public void testIsNotConfinedToAMockObjectIfItHasOrderingConstraintsOrSideEffects() {
+        expectation.setObjectMatcher(new MockObjectMatcher(targetObject));
+        expectation.setMethod(method);
+        
+        InvocationExpectation constrainedExpectation = new InvocationExpectation();
+        constrainedExpectation.setObjectMatcher(new MockObjectMatcher(targetObject));
+        constrainedExpectation.setMethod(method);
+        constrainedExpectation.addOrderingConstraint(new FakeOrderingConstraint());
+        assertFalse("should not be confined with an ordering constraint", constrainedExpectation.isConfinedToMockObject());
+        
+        expectation.addSideEffect(new FakeSideEffect());
+        assertFalse("should not be confined with a side effect", expectation.isConfinedToMockObject());
+    }
+    
+    public void testIsAStubIfItIsConfinedAllowsAnyNumberOfInvocationsAndHasAStatelessAction() {
+        expectation.setObjectMatcher(new MockObjectMatcher(targetObject));
+        expectation.setMethod(method);
+        assertTrue("should be a stub by default", expectation.isStub());
+        
+        expectation.setAction(new ReturnValueAction("result"));
+        assertTrue("should be a stub that returns a value", expectation.isStub());
+        
+        expectation.setCardinality(Cardinality.atLeast(2));
+        assertTrue("should be a stub with no maximum", expectation.isStub());
+        
+        expectation.setCardinality(Cardinality.atMost(2));
+        assertFalse("should not be a stub with a maximum", expectation.isStub());
+        
+        expectation.setCardinality(Cardinality.ALLOWING);
+        expectation.setAction(new MockAction());
+        assertFalse("should not be a stub with an action that may keep state", expectation.isStub());
+        
+        expectation.setAction(new ReturnValueAction("result"));
+        expectation.addSideEffect(new FakeSideEffect());
+        assertFalse("should not be a stub with a side effect", expectation.isStub());
+    }
+    
     public void testMatchesIfAllOrderingConstraintsMatch() {
         FakeOrderingConstraint orderingConstraint1 = new FakeOrderingConstraint();
         FakeOrderingConstraint orderingConstraint2 = new FakeOrderingConstraint();
@@ -0,0 +1,71 @@
+package org.jmock.test.unit.internal;
+
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+
+import org.jmock.internal.CaptureControl;
+import org.jmock.internal.ExpectationCapture;
+import org.jmock.internal.MethodKind;
+import org.jmock.internal.MethodKindCache;
+import org.jmock.test.acceptance.MockedType;
+
+public class MethodKindCacheTests extends TestCase {
+    MethodKindCache cache = new MethodKindCache();
+
+    public interface RedeclaringObjectMethods {
+        int hashCode();
+        String toString();
+        boolean equals(Object other);
+    }
+
+    public static class OverridingFinalize {
+        @Override
+        protected void finalize() {}
+    }
+
+    public interface LookingLikeObjectMethods {
+        long hashCode(int i);
+        String toString(String s);
+        boolean equals(String s);
+    }
+
+    public void testClassifiesMethodsOfTheObjectClass() throws Exception {
+        assertEquals(MethodKind.HASH_CODE, cache.kindOf(Object.class.getMethod("hashCode")));
+        assertEquals(MethodKind.TO_STRING, cache.kindOf(Object.class.getMethod("toString")));
+        assertEquals(MethodKind.EQUALS, cache.kindOf(Object.class.getMethod("equals", Object.class)));
+        assertEquals(MethodKind.FINALIZE, cache.kindOf(Object.class.getDeclaredMethod("finalize")));
+    }
+
+    public void testClassifiesObjectMethodsRedeclaredByOtherTypesByTheirSignatures() throws Exception {
+        assertEquals(MethodKind.HASH_CODE, cache.kindOf(RedeclaringObjectMethods.class.getMethod("hashCode")));
+        assertEquals(MethodKind.TO_STRING, cache.kindOf(RedeclaringObjectMethods.class.getMethod("toString")));
+        assertEquals(MethodKind.EQUALS, cache.kindOf(RedeclaringObjectMethods.class.getMethod("equals", Object.class)));
+        assertEquals(MethodKind.FINALIZE, cache.kindOf(OverridingFinalize.class.getDeclaredMethod("finalize")));
+    }
+
+    public void testClassifiesMethodsWithTheNamesButNotTheSignaturesOfObjectMethodsAsMocked() throws Exception {
+        assertEquals(MethodKind.MOCKED, cache.kindOf(LookingLikeObjectMethods.class.getMethod("hashCode", int.class)));
+        assertEquals(MethodKind.MOCKED, cache.kindOf(LookingLikeObjectMethods.class.getMethod("toString", String.class)));
+        assertEquals(MethodKind.MOCKED, cache.kindOf(LookingLikeObjectMethods.class.getMethod("equals", String.class)));
+    }
+
+    public void testClassifiesMethodsOfCaptureControl() throws Exception {
+        assertEquals(MethodKind.CAPTURE_CONTROL,
+                     cache.kindOf(CaptureControl.class.getMethod("captureExpectationTo", ExpectationCapture.class)));
+    }
+
+    public void testClassifiesOtherMethodsAsMocked() throws Exception {
+        assertEquals(MethodKind.MOCKED, cache.kindOf(MockedType.class.getMethod("doSomething")));
+    }
+
+    public void testReturnsTheSameKindWhenAskedAboutAMethodAgain() throws Exception {
+        Method hashCode = Object.class.getMethod("hashCode");
+        Method doSomething = MockedType.class.getMethod("doSomething");
+
+        assertEquals(MethodKind.HASH_CODE, cache.kindOf(hashCode));
+        assertEquals(MethodKind.MOCKED, cache.kindOf(doSomething));
+        assertEquals(MethodKind.HASH_CODE, cache.kindOf(hashCode));
+        assertEquals(MethodKind.MOCKED, cache.kindOf(doSomething));
+    }
+}
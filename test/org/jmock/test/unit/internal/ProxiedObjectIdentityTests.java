@@ -1,11 +1,15 @@
 package org.jmock.test.unit.internal;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
 import junit.framework.TestCase;
 
 import org.jmock.api.Invocation;
 import org.jmock.internal.FakeObjectMethods;
+import org.jmock.internal.MethodKind;
+import org.jmock.internal.MethodKindCache;
 import org.jmock.internal.ProxiedObjectIdentity;
 import org.jmock.test.acceptance.MockedType;
 import org.jmock.test.unit.support.StubInvokable;
@@ -72,4 +76,26 @@ public class ProxiedObjectIdentityTests extends TestCase {
         assertEquals("an Invocation of overridden toString", 
                      next.toStringResult, id.invoke(new Invocation(invokedObject, overriddenToString)));
     }
+
+    public void testLooksUpTheKindsOfInvokedMethodsInTheGivenCache() throws Throwable {
+        final List<Method> lookedUp = new ArrayList<Method>();
+        MethodKindCache methodKinds = new MethodKindCache() {
+            @Override
+            public MethodKind kindOf(Method method) {
+                lookedUp.add(method);
+                return super.kindOf(method);
+            }
+        };
+        FakeObjectMethods idWithCache = new ProxiedObjectIdentity(next, methodKinds);
+        Method hashCode = Object.class.getMethod("hashCode");
+        Method doSomething = MockedType.class.getMethod("doSomething");
+        
+        idWithCache.invoke(new Invocation(invokedObject, hashCode));
+        idWithCache.invoke(new Invocation(invokedObject, doSomething));
+        
+        assertEquals("looked up methods", 2, lookedUp.size());
+        assertSame("first method", hashCode, lookedUp.get(0));
+        assertSame("second method", doSomething, lookedUp.get(1));
+        assertTrue("should have invoked next", next.wasInvoked);
+    }
 }
@@ -0,0 +1,44 @@
+package org.jmock.test.unit.internal;
+
+import junit.framework.TestCase;
+
+import org.jmock.internal.ReflectionCache;
+
+public class ReflectionCacheTests extends TestCase {
+    ReflectionCache<String> cache = new ReflectionCache<String>();
+
+    public void testReturnsNullIfNoValueHasBeenCachedForAKey() {
+        assertNull(cache.get(String.class));
+    }
+
+    public void testReturnsValueCachedForTheSameObjectsInTheSameOrder() {
+        cache.put("value", String.class, Integer.class);
+
+        assertEquals("value", cache.get(String.class, Integer.class));
+        assertNull("should not match different order", cache.get(Integer.class, String.class));
+        assertNull("should not match fewer objects", cache.get(String.class));
+    }
+
+    public void testComparesKeysByIdentity() {
+        String key = "key";
+        cache.put("value", key);
+
+        assertEquals("value", cache.get(key));
+        assertNull("should not match equal but different object", cache.get(new String(key)));
+    }
+
+    public void testAllowsKeysToContainNull() {
+        cache.put("value", String.class, null);
+
+        assertEquals("value", cache.get(String.class, null));
+        assertNull(cache.get(String.class, Object.class));
+    }
+
+    public void testReplacesValueCachedForTheSameKey() {
+        cache.put("first", String.class);
+        cache.put("second", String.class);
+
+        assertEquals("second", cache.get(String.class));
+        assertEquals(1, cache.size());
+    }
+}
@@ -81,6 +81,44 @@ public class ReturnDefaultValueActionTests {
           imposterised.invoke(invocationReturning(Runnable.class)));
     }
 
+    @Test public void
+    returnsTheSameEmptyArrayForEachCall() throws Throwable {
+        assertSame(action.invoke(invocationReturning(String[].class)),
+                   action.invoke(invocationReturning(String[].class)));
+    }
+
+    @Test public void
+    returnsTheSameNullObjectForEachCall() throws Throwable {
+        final ReturnDefaultValueAction imposterised = new ReturnDefaultValueAction(new JavaReflectionImposteriser());
+
+        assertSame(imposterised.invoke(invocationReturning(ReturnsAnInt.class)),
+                   imposterised.invoke(invocationReturning(ReturnsAnInt.class)));
+    }
+
+    @Test public void
+    anExplicitlyRegisteredResultOverridesADefaultResultThatHasAlreadyBeenReturned() throws Throwable {
+        assertEquals("", action.invoke(invocationReturning(String.class)));
+
+        action.addResult(String.class, "result");
+
+        assertEquals("result", action.invoke(invocationReturning(String.class)));
+    }
+
+    @Test public void
+    usesANewImposteriserForNullObjectsOfTypesThatHaveAlreadyBeenReturned() throws Throwable {
+        final ReturnDefaultValueAction imposterised = new ReturnDefaultValueAction(new JavaReflectionImposteriser());
+        assertNotNull(imposterised.invoke(invocationReturning(ReturnsAnInt.class)));
+
+        imposterised.setImposteriser(new JavaReflectionImposteriser() {
+            @Override
+            public boolean canImposterise(Class<?> c) {
+                return false;
+            }
+        });
+
+        assertNull(imposterised.invoke(invocationReturning(ReturnsAnInt.class)));
+    }
+
     @Test public void
     defaultResultsCanBeExplicitlyOverriddenByType() throws Throwable {
         final int newDefaultIntResult = 20;
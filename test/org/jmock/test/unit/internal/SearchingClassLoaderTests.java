@@ -0,0 +1,39 @@
+package org.jmock.test.unit.internal;
+
+import junit.framework.TestCase;
+
+import org.jmock.internal.SearchingClassLoader;
+import org.jmock.test.unit.support.SyntheticEmptyInterfaceClassLoader;
+
+public class SearchingClassLoaderTests extends TestCase {
+    ClassLoader loader1 = new SyntheticEmptyInterfaceClassLoader("\\$Type1\\$");
+    ClassLoader loader2 = new SyntheticEmptyInterfaceClassLoader("\\$Type2\\$");
+    
+    public void testReturnsTheSameCombinedLoaderForTheSameLoadersInTheSameOrder() {
+        assertSame(SearchingClassLoader.combine(loader1, loader2),
+                   SearchingClassLoader.combine(loader1, loader2));
+    }
+    
+    public void testReturnsDifferentCombinedLoadersForLoadersInADifferentOrder() {
+        assertNotSame(SearchingClassLoader.combine(loader1, loader2),
+                      SearchingClassLoader.combine(loader2, loader1));
+    }
+    
+    public void testReturnsTheSameCombinedLoaderForTheLoadersOfTheSameClasses() throws ClassNotFoundException {
+        Class<?> type1 = loader1.loadClass("$Type1$");
+        Class<?> type2 = loader2.loadClass("$Type2$");
+        
+        assertSame(SearchingClassLoader.combineLoadersOf(type1, new Class<?>[] {type2}),
+                   SearchingClassLoader.combineLoadersOf(type1, new Class<?>[] {type2}));
+    }
+    
+    public void testCombinedLoaderFindsClassesOfAllCombinedLoaders() throws ClassNotFoundException {
+        Class<?> type1 = loader1.loadClass("$Type1$");
+        Class<?> type2 = loader2.loadClass("$Type2$");
+        
+        ClassLoader combined = SearchingClassLoader.combineLoadersOf(type1, new Class<?>[] {type2});
+        
+        assertSame(type1, combined.loadClass("$Type1$"));
+        assertSame(type2, combined.loadClass("$Type2$"));
+    }
+}
@@ -1,12 +1,17 @@
 package org.jmock.test.unit.internal;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import junit.framework.TestCase;
 
 import org.hamcrest.StringDescription;
 import org.jmock.States;
+import org.jmock.internal.ObservableStatePredicate;
+import org.jmock.internal.StateChangeListener;
 import org.jmock.internal.StateMachine;
 
 public class StateMachineTests extends TestCase {
@@ -117,6 +122,43 @@ public class StateMachineTests extends TestCase {
         assertEquals("stateMachineName is not A", StringDescription.toString(stateMachine.isNot("A")));
     }
     
+    public void testReturnsTheSameStatesEveryTimeItIsAskedForTheSameName() {
+        assertSame("is", stateMachine.is("A"), stateMachine.is("A"));
+        assertSame("isNot", stateMachine.isNot("A"), stateMachine.isNot("A"));
+        assertNotSame("other state", stateMachine.is("A"), stateMachine.is("B"));
+    }
+    
+    public void testRecognisesStatesNamedByEqualButNotIdenticalStrings() {
+        stateMachine.become(new String("A"));
+        
+        assertTrue("should report being in state A", stateMachine.is(new String("A")).isActive());
+        assertFalse("should not report not being in state A", stateMachine.isNot(new String("A")).isActive());
+    }
+    
+    public void testTellsListenersWhenItEntersADifferentState() {
+        StateMachine stateMachine = new StateMachine("stateMachineName");
+        final List<String> changes = new ArrayList<String>();
+        StateChangeListener listener = new StateChangeListener() {
+            public void stateChanged(StateMachine changed) {
+                changes.add(changed.toString());
+            }
+        };
+        
+        ((ObservableStatePredicate)stateMachine.is("A")).addStateChangeListener(listener);
+        
+        stateMachine.startsAs("A");
+        stateMachine.is("A").activate();
+        stateMachine.become("B");
+        
+        assertEquals("changes", 
+                     Arrays.asList("stateMachineName is A", "stateMachineName is B"), changes);
+        
+        ((ObservableStatePredicate)stateMachine.isNot("B")).removeStateChangeListener(listener);
+        stateMachine.become("C");
+        
+        assertEquals("number of changes after removing listener", 2, changes.size());
+    }
+    
     private <T> Set<T> except(Set<T> s, T e) {
         Set<T> result = new HashSet<T>(s);
         result.remove(e);
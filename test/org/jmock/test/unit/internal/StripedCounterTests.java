@@ -0,0 +1,55 @@
+package org.jmock.test.unit.internal;
+
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import org.jmock.internal.StripedCounter;
+
+public class StripedCounterTests extends TestCase {
+    StripedCounter counter = new StripedCounter();
+    
+    public void testStartsAtZero() {
+        assertEquals(0, counter.get());
+    }
+    
+    public void testCountsIncrements() {
+        for (int i = 0; i < 1000; i++) {
+            counter.increment();
+        }
+        
+        assertEquals(1000, counter.get());
+    }
+    
+    public void testCountsEveryIncrementMadeByConcurrentThreads() throws InterruptedException {
+        final int threadCount = 8;
+        final int incrementsPerThread = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < incrementsPerThread; i++) {
+                        counter.increment();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals((long)threadCount * incrementsPerThread, counter.get());
+    }
+}
@@ -0,0 +1,89 @@
+package org.jmock.test.unit.internal.matcher;
+
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+import org.hamcrest.core.IsEqual;
+import org.jmock.internal.matcher.AllParametersMatcher;
+
+public class AllParametersMatcherTests extends TestCase {
+    public void testMatchesParametersThatAllMatchTheirMatchers() {
+        AllParametersMatcher matcher = new AllParametersMatcher(new Object[]{1, "two"});
+
+        assertTrue(matcher.matches(Arrays.<Object>asList(1, "two")));
+        assertFalse(matcher.matches(Arrays.<Object>asList(1, "three")));
+        assertFalse(matcher.matches(Arrays.<Object>asList(2, "two")));
+    }
+
+    public void testDoesNotMatchTheWrongNumberOfParameters() {
+        AllParametersMatcher matcher = new AllParametersMatcher(new Object[]{1, "two"});
+
+        assertFalse(matcher.matches(asList(1)));
+        assertFalse(matcher.matches(Arrays.<Object>asList(1, "two", 3.0)));
+    }
+
+    public void testDoesNotMatchObjectsThatAreNotListsOfParameters() {
+        AllParametersMatcher matcher = new AllParametersMatcher(new Object[0]);
+
+        assertFalse(matcher.matches(null));
+        assertFalse(matcher.matches(new Object[0]));
+    }
+
+    public void testDoesNotDescribeAnythingWhenMatching() {
+        List<Matcher<?>> matchers = new ArrayList<Matcher<?>>();
+        matchers.add(new UndescribableMatcher(1));
+        matchers.add(new UndescribableMatcher("two"));
+
+        assertTrue(new AllParametersMatcher(matchers).matches(Arrays.<Object>asList(1, "two")));
+    }
+
+    public void testDescribesWhichParametersDidNotMatch() {
+        AllParametersMatcher matcher = new AllParametersMatcher(new Object[]{1, "two"});
+
+        assertEquals("\n      parameter 0 matched: <1>" +
+                     "\n      parameter 1 did not match: \"two\", because was \"three\"",
+                     describedMismatchOf(matcher, Arrays.<Object>asList(1, "three")));
+    }
+
+    public void testDescribesTheWrongNumberOfParameters() {
+        AllParametersMatcher matcher = new AllParametersMatcher(new Object[]{1, "two"});
+
+        assertEquals("wrong number of parameters: [<1>]", describedMismatchOf(matcher, asList(1)));
+    }
+
+    private String describedMismatchOf(Matcher<?> matcher, Object item) {
+        Description description = new StringDescription();
+        matcher.describeMismatch(item, description);
+        return description.toString();
+    }
+
+    private static class UndescribableMatcher extends BaseMatcher<Object> {
+        private final Matcher<Object> matcher;
+
+        public UndescribableMatcher(Object expected) {
+            this.matcher = new IsEqual<Object>(expected);
+        }
+
+        public boolean matches(Object item) {
+            return matcher.matches(item);
+        }
+
+        public void describeTo(Description description) {
+            fail("should not have described the matcher");
+        }
+
+        @Override
+        public void describeMismatch(Object item, Description description) {
+            fail("should not have described a mismatch");
+        }
+    }
+}
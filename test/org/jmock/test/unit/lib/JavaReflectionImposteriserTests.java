@@ -11,6 +11,7 @@ import org.jmock.api.Invocation;
 import org.jmock.api.Invokable;
 import org.jmock.internal.CaptureControl;
 import org.jmock.lib.JavaReflectionImposteriser;
+import org.jmock.lib.action.ReturnValueAction;
 import org.jmock.lib.action.VoidAction;
 import org.jmock.test.unit.support.SyntheticEmptyInterfaceClassLoader;
 
@@ -52,6 +53,21 @@ public class JavaReflectionImposteriserTests extends TestCase {
         assertTrue(interfaceClass2.isInstance(o));
     }
     
+    public void testReusesTheSameProxyClassForImpostersOfTheSameTypes() {
+        Object imposter1 = imposteriser.imposterise(mockObject, Runnable.class, CaptureControl.class);
+        Object imposter2 = imposteriser.imposterise(mockObject, Runnable.class, CaptureControl.class);
+        
+        assertSame(imposter1.getClass(), imposter2.getClass());
+    }
+    
+    public void testImpostersOfTheSameTypesForwardInvocationsToTheirOwnInvokable() {
+        Runnable imposter1 = imposteriser.imposterise(new ReturnValueAction("imposter1"), Runnable.class);
+        Runnable imposter2 = imposteriser.imposterise(new ReturnValueAction("imposter2"), Runnable.class);
+        
+        assertEquals("imposter1", imposter1.toString());
+        assertEquals("imposter2", imposter2.toString());
+    }
+    
     public void testCanImposteriseAClassInASignedJarFile() throws Exception {
         File jarFile = new File("build/testdata/signed.jar");
         
@@ -0,0 +1,312 @@
+package org.jmock.test.unit.lib.bytecode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.jmock.api.Action;
+import org.jmock.api.Imposteriser;
+import org.jmock.api.Invocation;
+import org.jmock.api.Invokable;
+import org.jmock.lib.action.ReturnValueAction;
+import org.jmock.lib.action.ThrowAction;
+import org.jmock.lib.action.VoidAction;
+import org.jmock.lib.bytecode.BytecodeImposteriser;
+import org.junit.Test;
+
+public class BytecodeImposteriserTests {
+    Action action = new ReturnValueAction("result");
+
+    Imposteriser imposteriser = BytecodeImposteriser.INSTANCE;
+
+    public static class ConcreteClassWithNastyConstructor {
+        {
+            nasty("initialisation block should not be run");
+        }
+
+        public ConcreteClassWithNastyConstructor() {
+            nasty("constructor should not be run");
+        }
+
+        public String foo() {
+            nasty("should not be run");
+            return null; // never reached
+        }
+
+        private static void nasty(String nastiness) {
+            throw new IllegalStateException(nastiness);
+        }
+    }
+
+    public interface AnInterface {
+        String foo();
+    }
+
+    public interface AnInterfaceWithPrimitives {
+        int add(int a, long b, double c, boolean d, char e, byte f, short g, float h);
+        void doSomething(int i);
+    }
+
+    public interface AnInterfaceThatThrows {
+        void declared() throws IOException;
+        void undeclared();
+    }
+
+    public interface AnInterfaceWithVarargs {
+        String join(String separator, String... strings);
+    }
+
+    public static abstract class AnAbstractClassImplementingAnInterface implements AnInterface {
+        protected abstract String bar();
+    }
+
+    public static class AClassWithAPrivateConstructor {
+        private AClassWithAPrivateConstructor(String someArgument) {}
+
+        public String foo() {return "original result";}
+    }
+
+    public static class AClassWithAFinalMethod {
+        public final String foo() {return "original result";}
+    }
+
+    public static class AComparableClass implements Comparable<AComparableClass> {
+        public int compareTo(AComparableClass o) {return 0;}
+    }
+
+    public static class ClassWithFinalToStringMethod {
+        @Override
+        public final String toString() {
+            return "you can't override me!";
+        }
+    }
+
+    @Test
+    public void canImposteriseInterfacesAndNonFinalInstantiableClasses() {
+        assertTrue("should report that it can imposterise interfaces",
+                   imposteriser.canImposterise(Runnable.class));
+        assertTrue("should report that it can imposterise classes",
+                   imposteriser.canImposterise(Date.class));
+        assertTrue("should report that it cannot imposterise final classes",
+                   !imposteriser.canImposterise(String.class));
+        assertTrue("should report that it cannot imposterise primitive types",
+                   !imposteriser.canImposterise(int.class));
+        assertTrue("should report that it cannot imposterise void",
+                   !imposteriser.canImposterise(void.class));
+    }
+
+    @Test
+    public void canImposteriseAConcreteClassWithoutCallingItsConstructorOrInstanceInitialiserBlocks() {
+        ConcreteClassWithNastyConstructor imposter =
+            imposteriser.imposterise(action, ConcreteClassWithNastyConstructor.class);
+
+        assertEquals("result", imposter.foo());
+    }
+
+    @Test
+    public void canImposteriseAnInterface() {
+        AnInterface imposter = imposteriser.imposterise(action, AnInterface.class);
+
+        assertEquals("result", imposter.foo());
+    }
+
+    @Test
+    public void canImposteriseAClassWithAPrivateConstructor() {
+        AClassWithAPrivateConstructor imposter =
+            imposteriser.imposterise(action, AClassWithAPrivateConstructor.class);
+
+        assertEquals("result", imposter.foo());
+    }
+
+    @Test
+    public void canImposteriseAnAbstractClassThatDoesNotImplementAllTheMethodsOfItsInterfaces() {
+        AnAbstractClassImplementingAnInterface imposter =
+            imposteriser.imposterise(action, AnAbstractClassImplementingAnInterface.class);
+
+        assertEquals("result", imposter.foo());
+        assertEquals("result", imposter.bar());
+    }
+
+    @Test
+    public void canImposteriseAnInterfaceAndAncilliaryTypes() {
+        Object imposter = imposteriser.imposterise(action, AnInterface.class, Runnable.class, Comparable.class);
+
+        assertTrue(imposter instanceof AnInterface);
+        assertTrue(imposter instanceof Runnable);
+        assertTrue(imposter instanceof Comparable);
+    }
+
+    @Test
+    public void passesTheInvokedMethodAndBoxedParametersToTheMockObject() throws Exception {
+        final List<Invocation> invocations = new ArrayList<Invocation>();
+        AnInterfaceWithPrimitives imposter = imposteriser.imposterise(new Invokable() {
+            public Object invoke(Invocation invocation) throws Throwable {
+                invocations.add(invocation);
+                return invocation.getInvokedMethod().getReturnType() == int.class ? 99 : null;
+            }
+        }, AnInterfaceWithPrimitives.class);
+
+        assertEquals(99, imposter.add(1, 2L, 3.0, true, 'e', (byte)6, (short)7, 8.0f));
+        imposter.doSomething(10);
+
+        Method add = AnInterfaceWithPrimitives.class.getMethod("add", int.class, long.class, double.class, boolean.class,
+                                                              char.class, byte.class, short.class, float.class);
+        assertSame(imposter, invocations.get(0).getInvokedObject());
+        assertEquals(add, invocations.get(0).getInvokedMethod());
+        assertEquals(Arrays.<Object>asList(1, 2L, 3.0, true, 'e', (byte)6, (short)7, 8.0f),
+                     Arrays.asList(invocations.get(0).getParametersAsArray()));
+
+        assertEquals(AnInterfaceWithPrimitives.class.getMethod("doSomething", int.class), invocations.get(1).getInvokedMethod());
+        assertEquals(Arrays.<Object>asList(10), Arrays.asList(invocations.get(1).getParametersAsArray()));
+    }
+
+    @Test
+    public void passesVarargsToTheMockObjectAsAnArray() {
+        final List<Invocation> invocations = new ArrayList<Invocation>();
+        AnInterfaceWithVarargs imposter = imposteriser.imposterise(new Invokable() {
+            public Object invoke(Invocation invocation) throws Throwable {
+                invocations.add(invocation);
+                return null;
+            }
+        }, AnInterfaceWithVarargs.class);
+
+        imposter.join(",", "a", "b");
+
+        assertEquals(",", invocations.get(0).getParameter(0));
+        assertTrue(Arrays.equals(new String[]{"a", "b"}, (String[])invocations.get(0).getParameter(1)));
+    }
+
+    @Test
+    public void throwsDeclaredAndUncheckedExceptionsFromTheMockObject() {
+        IOException declared = new IOException("declared");
+        AnInterfaceThatThrows imposter = imposteriser.imposterise(new ThrowAction(declared), AnInterfaceThatThrows.class);
+
+        try {
+            imposter.declared();
+            fail("should have thrown IOException");
+        }
+        catch (IOException e) {
+            assertSame(declared, e);
+        }
+
+        IllegalStateException unchecked = new IllegalStateException("unchecked");
+        imposter = imposteriser.imposterise(new ThrowAction(unchecked), AnInterfaceThatThrows.class);
+        try {
+            imposter.undeclared();
+            fail("should have thrown IllegalStateException");
+        }
+        catch (IllegalStateException e) {
+            assertSame(unchecked, e);
+        }
+    }
+
+    @Test
+    public void wrapsUndeclaredCheckedExceptionsThrownByTheMockObject() {
+        final IOException undeclared = new IOException("undeclared");
+        AnInterfaceThatThrows imposter = imposteriser.imposterise(new Invokable() {
+            public Object invoke(Invocation invocation) throws Throwable {
+                throw undeclared;
+            }
+        }, AnInterfaceThatThrows.class);
+
+        try {
+            imposter.undeclared();
+            fail("should have thrown UndeclaredThrowableException");
+        }
+        catch (UndeclaredThrowableException e) {
+            assertSame(undeclared, e.getUndeclaredThrowable());
+        }
+    }
+
+    @Test
+    public void doesNotImposteriseFinalMethods() {
+        AClassWithAFinalMethod imposter = imposteriser.imposterise(action, AClassWithAFinalMethod.class);
+
+        assertEquals("original result", imposter.foo());
+    }
+
+    @Test
+    public void invocationsOfBridgeMethodsArePassedToTheMockObjectAsInvocationsOfTheBridgedMethod() throws Exception {
+        final List<Invocation> invocations = new ArrayList<Invocation>();
+        @SuppressWarnings("unchecked")
+        Comparable<Object> imposter = (Comparable<Object>)(Object)imposteriser.imposterise(new Invokable() {
+            public Object invoke(Invocation invocation) throws Throwable {
+                invocations.add(invocation);
+                return 1;
+            }
+        }, AComparableClass.class);
+
+        assertEquals(1, imposter.compareTo(new AComparableClass()));
+        assertEquals(AComparableClass.class.getMethod("compareTo", AComparableClass.class),
+                     invocations.get(0).getInvokedMethod());
+    }
+
+    @Test
+    public void reusesTheSameClassForImpostersOfTheSameTypes() {
+        AnInterface imposter1 = imposteriser.imposterise(new ReturnValueAction("imposter1"), AnInterface.class);
+        AnInterface imposter2 = imposteriser.imposterise(new ReturnValueAction("imposter2"), AnInterface.class);
+
+        assertSame(imposter1.getClass(), imposter2.getClass());
+        assertEquals("imposter1", imposter1.foo());
+        assertEquals("imposter2", imposter2.foo());
+    }
+
+    @Test
+    public void canImposteriseAClassInASignedJarFile() throws Exception {
+        File jarFile = new File("build/testdata/signed.jar");
+
+        assertTrue("Signed JAR file does not exist (use Ant to build it", jarFile.exists());
+
+        URL jarURL = jarFile.toURI().toURL();
+        ClassLoader loader = new URLClassLoader(new URL[]{jarURL});
+        Class<?> typeInSignedJar = loader.loadClass("TypeInSignedJar");
+
+        Object o = imposteriser.imposterise(new VoidAction(), typeInSignedJar);
+
+        assertTrue(typeInSignedJar.isInstance(o));
+    }
+
+    @Test
+    public void cannotImposteriseAClassWithAFinalToStringMethod() {
+        assertFalse("should not be able to imposterise it", imposteriser.canImposterise(ClassWithFinalToStringMethod.class));
+
+        try {
+            imposteriser.imposterise(new VoidAction(), ClassWithFinalToStringMethod.class);
+            fail("should have thrown IllegalArgumentException");
+        }
+        catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void doesntDelegateFinalizeMethod() throws Exception {
+        Invokable failIfInvokedAction = new Invokable() {
+            public Object invoke(Invocation invocation) throws Throwable {
+                fail("invocation should not have happened");
+                return null;
+            }
+        };
+
+        Object imposter = imposteriser.imposterise(failIfInvokedAction, Object.class);
+        invokeMethod(imposter, Object.class.getDeclaredMethod("finalize"));
+    }
+
+    private Object invokeMethod(Object object, Method method, Object... args) throws IllegalAccessException, InvocationTargetException {
+        method.setAccessible(true);
+        return method.invoke(object, args);
+    }
+}
@@ -0,0 +1,222 @@
+package org.jmock.test.unit.lib.concurrent;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNoException;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.Description;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.States;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.internal.StatePredicate;
+import org.jmock.lib.concurrent.Blitzer;
+import org.jmock.lib.concurrent.ReentrantLockSynchroniser;
+import org.junit.After;
+import org.junit.Test;
+
+public class ReentrantLockSynchroniserTests {
+    public interface Events {
+        void action();
+        void finished();
+    }
+
+    ReentrantLockSynchroniser synchroniser = new ReentrantLockSynchroniser();
+
+    Mockery mockery = new JUnit4Mockery() {{
+        setThreadingPolicy(synchroniser);
+    }};
+
+    Blitzer blitzer = new Blitzer(16, 4);
+
+    Events mockObject = mockery.mock(Events.class, "mockObject");
+
+    @Test(timeout=250)
+    public void allowsMultipleThreadsToCallMockObjects() throws InterruptedException {
+        mockery.checking(new Expectations() {{
+            exactly(blitzer.totalActionCount()).of(mockObject).action();
+        }});
+
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                mockObject.action();
+            }
+        });
+
+        mockery.assertIsSatisfied();
+    }
+
+    @Test(timeout=20000)
+    public void allowsTenThousandVirtualThreadsToCallMockObjectsAtOnce() throws InterruptedException {
+        final Blitzer manyThreads = new Blitzer(10000, 10000, virtualThreadFactory());
+        try {
+            mockery.checking(new Expectations() {{
+                exactly(manyThreads.totalActionCount()).of(mockObject).action();
+            }});
+
+            manyThreads.blitz(new Runnable() {
+                public void run() {
+                    mockObject.action();
+                }
+            });
+
+            mockery.assertIsSatisfied();
+        }
+        finally {
+            manyThreads.shutdown();
+        }
+    }
+
+    @Test(timeout=250)
+    public void canWaitForAStateMachineToEnterAGivenState() throws InterruptedException {
+        final AtomicInteger counter = new AtomicInteger(blitzer.totalActionCount());
+
+        final States threads = mockery.states("threads");
+
+        mockery.checking(new Expectations() {{
+            exactly(blitzer.totalActionCount()).of(mockObject).action();
+                when(threads.isNot("finished"));
+
+            oneOf(mockObject).finished();
+                then(threads.is("finished"));
+        }});
+
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                mockObject.action();
+                if (counter.decrementAndGet() == 0) {
+                    mockObject.finished();
+                }
+            }
+        });
+
+        synchroniser.waitUntil(threads.is("finished"));
+    }
+
+    @Test(timeout=250)
+    public void canWaitForAStateMachineToEnterAGivenStateWithinSomeTimeout() throws InterruptedException {
+        final States threads = mockery.states("threads");
+
+        mockery.checking(new Expectations() {{
+            exactly(blitzer.totalActionCount()).of(mockObject).action();
+                when(threads.isNot("finished"));
+
+            oneOf(mockObject).finished();
+                then(threads.is("finished"));
+        }});
+
+        blitzer.blitz(new Runnable() {
+            AtomicInteger counter = new AtomicInteger(blitzer.totalActionCount());
+
+            public void run() {
+                mockObject.action();
+                if (counter.decrementAndGet() == 0) {
+                    mockObject.finished();
+                }
+            }
+        });
+
+        synchroniser.waitUntil(threads.is("finished"), 100, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(timeout=250)
+    public void failsIfStateMachineDoesNotEnterExpectedStateWithinTimeout() throws InterruptedException {
+        States threads = mockery.states("threads");
+
+        try {
+            synchroniser.waitUntil(threads.is("finished"), 100);
+        }
+        catch (RuntimeException e) {
+            assertThat(e.getMessage(), containsString("threads is finished"));
+            return;
+        }
+
+        fail("should have thrown RuntimeException");
+    }
+
+    @Test(timeout=250)
+    public void wakesWaitingThreadsWhenAStateMachineChangesStateOutsideAnInvocation() throws InterruptedException {
+        final States threads = mockery.states("threads");
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                threads.become("finished");
+            }
+        };
+        thread.start();
+
+        synchroniser.waitUntil(threads.is("finished"));
+        thread.join();
+    }
+
+    @Test(timeout=250)
+    public void wakesThreadsWaitingForOtherPredicatesAfterEveryInvocation() throws InterruptedException {
+        final AtomicInteger counter = new AtomicInteger(blitzer.totalActionCount());
+
+        mockery.checking(new Expectations() {{
+            exactly(blitzer.totalActionCount()).of(mockObject).action();
+        }});
+
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                counter.decrementAndGet();
+                mockObject.action();
+            }
+        });
+
+        synchroniser.waitUntil(new StatePredicate() {
+            public boolean isActive() {
+                return counter.get() == 0;
+            }
+
+            public void describeTo(Description description) {
+                description.appendText("all actions performed");
+            }
+        });
+    }
+
+    @Test(timeout=250)
+    public void failsWaitingThreadsAsSoonAsAnExpectationFails() throws InterruptedException {
+        final States threads = mockery.states("threads");
+
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                mockObject.action();
+            }
+        });
+
+        try {
+            synchroniser.waitUntil(threads.is("finished"));
+            fail("should have thrown AssertionError");
+        }
+        catch (AssertionError e) {
+            assertThat(e.getMessage(), containsString("action()"));
+        }
+    }
+
+    /*
+     * Virtual threads are only available from Java 21, so the factory is
+     * looked up reflectively and the test is skipped on earlier JVMs.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory)Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        }
+        catch (Exception e) {
+            assumeNoException(e);
+            return null;
+        }
+    }
+
+    @After
+    public void cleanUp() {
+        blitzer.shutdown();
+    }
+}
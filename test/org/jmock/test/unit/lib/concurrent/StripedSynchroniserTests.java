@@ -0,0 +1,310 @@
+package org.jmock.test.unit.lib.concurrent;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.Description;
+import org.hamcrest.StringDescription;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.Sequence;
+import org.jmock.States;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.concurrent.Blitzer;
+import org.jmock.lib.concurrent.StripedSynchroniser;
+import org.junit.After;
+import org.junit.Test;
+
+public class StripedSynchroniserTests {
+    public interface Events {
+        void action();
+        void finished();
+    }
+    
+    StripedSynchroniser synchroniser = new StripedSynchroniser();
+    
+    Mockery mockery = new JUnit4Mockery() {{
+        setThreadingPolicy(synchroniser);
+    }};
+    
+    Blitzer blitzer = new Blitzer(16, 4);
+    
+    Events mockObject = mockery.mock(Events.class, "mockObject");
+    Events otherMockObject = mockery.mock(Events.class, "otherMockObject");
+    
+    @Test(timeout=250)
+    public void allowsMultipleThreadsToCallMockObjects() throws InterruptedException {
+        mockery.checking(new Expectations() {{
+            exactly(blitzer.totalActionCount()).of(mockObject).action();
+        }});
+        
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                mockObject.action();
+            }
+        });
+        
+        mockery.assertIsSatisfied();
+    }
+    
+    @Test(timeout=1000)
+    public void doesNotMakeThreadsCallingDifferentMockObjectsWaitForEachOther() throws InterruptedException {
+        final CountDownLatch otherMockObjectInvoked = new CountDownLatch(1);
+        
+        mockery.checking(new Expectations() {{
+            oneOf(mockObject).action(); will(new CustomAction("wait for otherMockObject to be invoked") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    assertTrue("otherMockObject should have been invoked",
+                               otherMockObjectInvoked.await(500, TimeUnit.MILLISECONDS));
+                    return null;
+                }
+            });
+            oneOf(otherMockObject).action();
+        }});
+        
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                mockObject.action();
+            }
+        };
+        thread.start();
+        
+        otherMockObject.action();
+        otherMockObjectInvoked.countDown();
+        thread.join();
+        
+        mockery.assertIsSatisfied();
+    }
+    
+    @Test(timeout=1000)
+    public void doesNotMakeThreadsInvokingStubsWaitForThreadsInvokingTheSameMockObject() throws InterruptedException {
+        final CountDownLatch stubInvoked = new CountDownLatch(1);
+        
+        mockery.checking(new Expectations() {{
+            oneOf(mockObject).finished(); will(new CustomAction("wait for the stub to be invoked") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    assertTrue("stub should have been invoked",
+                               stubInvoked.await(500, TimeUnit.MILLISECONDS));
+                    return null;
+                }
+            });
+            allowing(mockObject).action();
+        }});
+        
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                mockObject.finished();
+            }
+        };
+        thread.start();
+        
+        mockObject.action();
+        stubInvoked.countDown();
+        thread.join();
+        
+        mockery.assertIsSatisfied();
+    }
+    
+    @Test(timeout=250)
+    public void countsEveryInvocationOfStubsInvokedByMultipleThreads() throws InterruptedException {
+        mockery.checking(new Expectations() {{
+            atLeast(blitzer.totalActionCount()).of(mockObject).action();
+        }});
+        
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                mockObject.action();
+            }
+        });
+        
+        mockery.assertIsSatisfied();
+        assertThat(StringDescription.toString(mockery),
+                   containsString("already invoked " + blitzer.totalActionCount() + " times"));
+    }
+    
+    @Test(timeout=250)
+    public void countsInvocationsOfExpectationsThatMatchMoreThanOneMockObject() throws InterruptedException {
+        mockery.checking(new Expectations() {{
+            exactly(blitzer.totalActionCount()).of(any(Events.class)).method("action");
+        }});
+        
+        blitzer.blitz(new Runnable() {
+            AtomicInteger counter = new AtomicInteger(0);
+            
+            public void run() {
+                if (counter.incrementAndGet() % 2 == 0) {
+                    mockObject.action();
+                }
+                else {
+                    otherMockObject.action();
+                }
+            }
+        });
+        
+        mockery.assertIsSatisfied();
+    }
+    
+    @Test(timeout=250)
+    public void ordersInvocationsOfDifferentMockObjectsInASequence() throws InterruptedException {
+        final Sequence sequence = mockery.sequence("sequence");
+        final int actionCount = blitzer.totalActionCount() / 2;
+        
+        mockery.checking(new Expectations() {{
+            exactly(actionCount).of(mockObject).action(); inSequence(sequence);
+            exactly(actionCount).of(otherMockObject).action(); inSequence(sequence);
+        }});
+        
+        final CountDownLatch firstHalfDone = new CountDownLatch(actionCount);
+        blitzer.blitz(new Runnable() {
+            AtomicInteger counter = new AtomicInteger(0);
+            
+            public void run() {
+                try {
+                    if (counter.incrementAndGet() <= actionCount) {
+                        mockObject.action();
+                        firstHalfDone.countDown();
+                    }
+                    else {
+                        firstHalfDone.await();
+                        otherMockObject.action();
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        
+        mockery.assertIsSatisfied();
+    }
+    
+    @Test(timeout=250)
+    public void canWaitForAStateMachineToEnterAGivenState() throws InterruptedException {
+        final AtomicInteger counter = new AtomicInteger(blitzer.totalActionCount());
+        
+        final States threads = mockery.states("threads");
+        
+        mockery.checking(new Expectations() {{
+            exactly(blitzer.totalActionCount()).of(mockObject).action();
+                when(threads.isNot("finished"));
+                
+            oneOf(otherMockObject).finished();
+                then(threads.is("finished"));
+        }});
+        
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                mockObject.action();
+                if (counter.decrementAndGet() == 0) {
+                    otherMockObject.finished();
+                }
+            }
+        });
+        
+        synchroniser.waitUntil(threads.is("finished"));
+    }
+
+    @Test(timeout=250)
+    public void canWaitForAStateMachineToEnterAGivenStateWithinSomeTimeout() throws InterruptedException {
+        final States threads = mockery.states("threads");
+        
+        mockery.checking(new Expectations() {{
+            exactly(blitzer.totalActionCount()).of(mockObject).action();
+                when(threads.isNot("finished"));
+                
+            oneOf(mockObject).finished();
+                then(threads.is("finished"));
+        }});
+        
+        blitzer.blitz(new Runnable() {
+            AtomicInteger counter = new AtomicInteger(blitzer.totalActionCount());
+            
+            public void run() {
+                mockObject.action();
+                if (counter.decrementAndGet() == 0) {
+                    mockObject.finished();
+                }
+            }
+        });
+        
+        synchroniser.waitUntil(threads.is("finished"), 100);
+    }
+
+    @Test(timeout=250)
+    public void failsIfStateMachineDoesNotEnterExpectedStateWithinTimeout() throws InterruptedException {
+        States threads = mockery.states("threads");
+        
+        try {
+            synchroniser.waitUntil(threads.is("finished"), 100);
+        }
+        catch (RuntimeException e) {
+            assertThat(e.getMessage(), containsString("timed out waiting for threads is finished"));
+            return;
+        }
+        
+        fail("should have thrown RuntimeException");
+    }
+    
+    @Test(timeout=250)
+    public void wakesWaitingThreadsAfterInvocationsThatAreConfinedToAMockObject() throws InterruptedException {
+        final AtomicInteger counter = new AtomicInteger(blitzer.totalActionCount());
+        
+        mockery.checking(new Expectations() {{
+            exactly(blitzer.totalActionCount()).of(mockObject).action();
+        }});
+        
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                counter.decrementAndGet();
+                mockObject.action();
+            }
+        });
+        
+        synchroniser.waitUntil(new org.jmock.internal.StatePredicate() {
+            public boolean isActive() {
+                return counter.get() == 0;
+            }
+            
+            public void describeTo(Description description) {
+                description.appendText("all actions performed");
+            }
+        });
+    }
+    
+    @Test
+    public void throwsExpectationErrorIfExpectationFailsWhileWaitingForStateMachine() throws InterruptedException {
+        final States threads = mockery.states("threads");
+        
+        // This will cause an expectation error, and nothing will make
+        // the "threads" state machine transition to "finished" 
+        
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                mockObject.action();
+            }
+        });
+        
+        try {
+            synchroniser.waitUntil(threads.is("finished"), 100);
+            fail("should have thrown AssertionError");
+        }
+        catch (AssertionError e) {
+            assertThat(e.getMessage(), containsString("action()"));
+        }
+    }
+    
+    @After
+    public void cleanUp() {
+        blitzer.shutdown();
+    }
+}
@@ -6,10 +6,12 @@ import static org.junit.Assert.fail;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.hamcrest.Description;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.States;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.internal.StatePredicate;
 import org.jmock.lib.concurrent.Blitzer;
 import org.jmock.lib.concurrent.Synchroniser;
 import org.junit.After;
@@ -165,6 +167,67 @@ public class SynchroniserTests {
         }
     }
     
+    @Test(timeout=250)
+    public void wakesWaitingThreadsWhenAStateMachineChangesStateOutsideAnInvocation() throws InterruptedException {
+        final States threads = mockery.states("threads");
+        
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                threads.become("finished");
+            }
+        };
+        thread.start();
+        
+        synchroniser.waitUntil(threads.is("finished"));
+        thread.join();
+    }
+    
+    @Test(timeout=250)
+    public void wakesThreadsWaitingForOtherPredicatesAfterEveryInvocation() throws InterruptedException {
+        final AtomicInteger counter = new AtomicInteger(blitzer.totalActionCount());
+        
+        mockery.checking(new Expectations() {{
+            exactly(blitzer.totalActionCount()).of(mockObject).action();
+        }});
+        
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                counter.decrementAndGet();
+                mockObject.action();
+            }
+        });
+        
+        synchroniser.waitUntil(new StatePredicate() {
+            public boolean isActive() {
+                return counter.get() == 0;
+            }
+            
+            public void describeTo(Description description) {
+                description.appendText("all actions performed");
+            }
+        });
+    }
+    
+    @Test(timeout=250)
+    public void failsWaitingThreadsAsSoonAsAnExpectationFails() throws InterruptedException {
+        final States threads = mockery.states("threads");
+        
+        blitzer.blitz(new Runnable() {
+            public void run() {
+                mockObject.action();
+            }
+        });
+        
+        try {
+            synchroniser.waitUntil(threads.is("finished"));
+            fail("should have thrown AssertionError");
+        }
+        catch (AssertionError e) {
+            assertThat(e.getMessage(), containsString("action()"));
+        }
+    }
+    
     @After
     public void cleanUp() {
         blitzer.shutdown();
@@ -0,0 +1,212 @@
+package org.jmock.test.unit.lib.history;
+
+import static org.hamcrest.StringDescription.asString;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jmock.api.Invocation;
+import org.jmock.lib.history.InvocationJournalReader;
+import org.jmock.lib.history.JournalledInvocation;
+import org.jmock.lib.history.JournalledInvocationHistory;
+import org.jmock.test.unit.support.AssertThat;
+import org.jmock.test.unit.support.MethodFactory;
+
+public class JournalledInvocationHistoryTests extends TestCase {
+    MethodFactory methodFactory = new MethodFactory();
+    Method doSomething = methodFactory.newMethod("doSomething");
+    Method doSomethingWith = methodFactory.newMethod("doSomethingWith", new Class<?>[]{String.class, int.class}, void.class, new Class<?>[0]);
+    File journalFile;
+
+    @Override
+    public void setUp() throws IOException {
+        journalFile = File.createTempFile("jmock", ".journal");
+    }
+
+    @Override
+    public void tearDown() {
+        journalFile.delete();
+    }
+
+    public void testDescribesNothingIfNoInvocationsHaveBeenRecorded() throws IOException {
+        JournalledInvocationHistory history = new JournalledInvocationHistory(journalFile, 4096);
+
+        assertEquals(" nothing!", asString(history));
+    }
+
+    public void testDescribesJournalledInvocationsLikeAMockery() throws IOException {
+        JournalledInvocationHistory history = new JournalledInvocationHistory(journalFile, 4096);
+
+        history.record(new Invocation("mock", doSomething));
+        history.record(new Invocation("otherMock", doSomethingWith, "x", 1));
+        history.record(new Invocation("mock", doSomethingWith, null, 2));
+
+        assertEquals("\n  mock.doSomething()\n  otherMock.doSomethingWith(\"x\", <1>)\n  mock.doSomethingWith(null, <2>)\n",
+                     asString(history));
+    }
+
+    public void testJournalCanBeReadFromTheFile() throws IOException {
+        JournalledInvocationHistory history = new JournalledInvocationHistory(journalFile, 4096);
+        long before = System.currentTimeMillis();
+        history.record(new Invocation("mock", doSomething));
+        history.record(new Invocation("mock", doSomethingWith, "x", 1));
+        long after = System.currentTimeMillis();
+
+        InvocationJournalReader reader = new InvocationJournalReader(journalFile);
+        List<JournalledInvocation> invocations = reader.getInvocations();
+
+        assertEquals("number of invocations", 2, invocations.size());
+        assertEquals("\n  mock.doSomething()\n  mock.doSomethingWith(\"x\", <1>)\n", asString(reader));
+
+        JournalledInvocation second = invocations.get(1);
+        assertEquals("object name", "mock", second.getObjectName());
+        assertEquals("method name", "doSomethingWith", second.getMethodName());
+        assertEquals("method signature", doSomethingWith.toString(), second.getMethodSignature());
+        assertEquals("argument descriptions", 2, second.getArgumentDescriptions().size());
+        assertEquals("first argument", "\"x\"", second.getArgumentDescriptions().get(0));
+        assertEquals("thread id", Thread.currentThread().getId(), second.getThreadId());
+        assertTrue("timestamp", before <= second.getTimestamp() && second.getTimestamp() <= after);
+    }
+
+    public void testCountsInvocationsThatDoNotFitInTheJournal() throws IOException {
+        JournalledInvocationHistory history = new JournalledInvocationHistory(journalFile, 512);
+        int invocationCount = 100;
+
+        for (int i = 0; i < invocationCount; i++) {
+            history.record(new Invocation("mock", doSomething));
+        }
+
+        List<JournalledInvocation> journalled = new InvocationJournalReader(journalFile).getInvocations();
+        int unjournalledCount = invocationCount - journalled.size();
+        assertTrue("should have journalled some invocations", journalled.size() > 0);
+        assertTrue("should not have journalled all invocations", unjournalledCount > 0);
+        assertEquals("unjournalled invocations", unjournalledCount, history.getUnjournalledCount());
+        assertTrue("should state what was not kept",
+                   asString(history).endsWith("\n  mock.doSomething()"
+                       + "\n  (" + unjournalledCount + " invocations after these were not kept because the journal is full)\n"));
+    }
+
+    public void testJournalsInvocationsFromConcurrentThreads() throws Exception {
+        final JournalledInvocationHistory history = new JournalledInvocationHistory(journalFile, 1024 * 1024);
+        final int threadCount = 4;
+        final int invocationsPerThread = 1000;
+
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final String mockName = "mock" + t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < invocationsPerThread; i++) {
+                        history.record(new Invocation(mockName, doSomethingWith, "x", i));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<JournalledInvocation> journalled = new InvocationJournalReader(journalFile).getInvocations();
+        assertEquals("journalled invocations", threadCount * invocationsPerThread, journalled.size());
+        for (JournalledInvocation invocation : journalled) {
+            assertTrue("object name", invocation.getObjectName().startsWith("mock"));
+            assertEquals("method name", "doSomethingWith", invocation.getMethodName());
+        }
+    }
+
+    public void testDescribesOnlyTheMostRecentInvocations() throws IOException {
+        JournalledInvocationHistory history = new JournalledInvocationHistory(journalFile, 4096, 2);
+
+        for (int i = 0; i < 5; i++) {
+            history.record(new Invocation("mock", doSomethingWith, "x", i));
+        }
+
+        assertEquals("\n  (3 invocations before these are only in the journal)"
+                     + "\n  mock.doSomethingWith(\"x\", <3>)\n  mock.doSomethingWith(\"x\", <4>)\n",
+                     asString(history));
+        assertEquals("journalled invocations", 5, new InvocationJournalReader(journalFile).getInvocationCount());
+    }
+
+    public void testJournalsInvocationsMadeWhileDescribingTheArgumentsOfAnother() throws IOException {
+        final JournalledInvocationHistory history = new JournalledInvocationHistory(journalFile, 4096);
+        Object argument = new Object() {
+            @Override
+            public String toString() {
+                history.record(new Invocation("otherMock", doSomething));
+                return "argument";
+            }
+        };
+
+        history.record(new Invocation("mock", doSomethingWith, argument, 1));
+
+        assertEquals("\n  otherMock.doSomething()\n  mock.doSomethingWith(<argument>, <1>)\n", asString(history));
+    }
+
+    public void testCanBeDescribedWhileThreadsAreJournalling() throws Exception {
+        final JournalledInvocationHistory history = new JournalledInvocationHistory(journalFile, 1024 * 1024, 10);
+        final int invocationsPerThread = 2000;
+        // The method is journalled before the threads start and each thread
+        // invokes its own mock object, so no invocation can refer to a name
+        // that is not in the journal yet
+        history.record(new Invocation("firstMock", doSomethingWith, "x", 0));
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final String mockName = "mock" + t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < invocationsPerThread; i++) {
+                        history.record(new Invocation(mockName, doSomethingWith, "x", i));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        boolean finished = false;
+        while (!finished) {
+            finished = true;
+            for (Thread thread : threads) {
+                finished &= !thread.isAlive();
+            }
+            assertFalse("should only describe complete invocations", asString(history).contains("<unknown>"));
+        }
+
+        assertEquals("journalled invocations", 1 + threads.length * invocationsPerThread,
+                     new InvocationJournalReader(journalFile).getInvocationCount());
+    }
+
+    public void testStopsJournallingWhenClosed() throws IOException {
+        JournalledInvocationHistory history = new JournalledInvocationHistory(journalFile, 4096);
+        history.record(new Invocation("mock", doSomething));
+
+        history.close();
+        history.record(new Invocation("mock", doSomething));
+
+        assertEquals("unjournalled invocations", 1, history.getUnjournalledCount());
+        AssertThat.stringIncludes("should state that the journal is closed", "has been closed", asString(history));
+
+        InvocationJournalReader reader = new InvocationJournalReader(journalFile);
+        try {
+            assertEquals("\n  mock.doSomething()\n", asString(reader));
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    public void testReaderRejectsFilesThatAreNotJournals() throws IOException {
+        try {
+            new InvocationJournalReader(journalFile);
+            fail("should have thrown IllegalArgumentException");
+        }
+        catch (IllegalArgumentException expected) {}
+    }
+}
@@ -0,0 +1,25 @@
+package org.jmock.test.unit.lib.history;
+
+import static org.hamcrest.StringDescription.asString;
+
+import junit.framework.TestCase;
+
+import org.jmock.api.Invocation;
+import org.jmock.lib.history.NoInvocationHistory;
+import org.jmock.test.unit.support.MethodFactory;
+
+public class NoInvocationHistoryTests extends TestCase {
+    MethodFactory methodFactory = new MethodFactory();
+    NoInvocationHistory history = new NoInvocationHistory();
+
+    public void testDescribesNothingIfNoInvocationsHaveBeenRecorded() {
+        assertEquals(" nothing!", asString(history));
+    }
+
+    public void testDescribesOnlyHowManyInvocationsHaveBeenRecorded() {
+        history.record(new Invocation("mock", methodFactory.newMethod("first")));
+        history.record(new Invocation("mock", methodFactory.newMethod("second")));
+
+        assertEquals(" 2 invocations, none of which were kept\n", asString(history));
+    }
+}
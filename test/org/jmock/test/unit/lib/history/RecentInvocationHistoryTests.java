@@ -0,0 +1,48 @@
+package org.jmock.test.unit.lib.history;
+
+import static org.hamcrest.StringDescription.asString;
+
+import junit.framework.TestCase;
+
+import org.jmock.api.Invocation;
+import org.jmock.lib.history.RecentInvocationHistory;
+import org.jmock.test.unit.support.MethodFactory;
+
+public class RecentInvocationHistoryTests extends TestCase {
+    MethodFactory methodFactory = new MethodFactory();
+    RecentInvocationHistory history = new RecentInvocationHistory(2);
+
+    public void testDescribesNothingIfNoInvocationsHaveBeenRecorded() {
+        assertEquals(" nothing!", asString(history));
+    }
+
+    public void testDescribesAllInvocationsIfThereAreNoMoreThanTheLimit() {
+        history.record(invocationOf("first"));
+        history.record(invocationOf("second"));
+
+        assertEquals("\n  mock.first()\n  mock.second()\n", asString(history));
+    }
+
+    public void testDescribesOnlyTheMostRecentInvocationsAndCountsTheOthers() {
+        history.record(invocationOf("first"));
+        history.record(invocationOf("second"));
+        history.record(invocationOf("third"));
+        history.record(invocationOf("fourth"));
+        history.record(invocationOf("fifth"));
+
+        assertEquals("\n  (3 invocations before these were not kept)\n  mock.fourth()\n  mock.fifth()\n",
+                     asString(history));
+    }
+
+    public void testCannotBeCreatedWithALimitOfLessThanOne() {
+        try {
+            new RecentInvocationHistory(0);
+            fail("should have thrown IllegalArgumentException");
+        }
+        catch (IllegalArgumentException expected) {}
+    }
+
+    private Invocation invocationOf(String methodName) {
+        return new Invocation("mock", methodFactory.newMethod(methodName));
+    }
+}
@@ -0,0 +1,50 @@
+package org.jmock.test.unit.lib.history;
+
+import static org.hamcrest.StringDescription.asString;
+
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+
+import org.jmock.api.Invocation;
+import org.jmock.lib.history.SummarisedInvocationHistory;
+import org.jmock.test.unit.support.MethodFactory;
+
+public class SummarisedInvocationHistoryTests extends TestCase {
+    MethodFactory methodFactory = new MethodFactory();
+    Method poll = methodFactory.newMethod("poll", new Class<?>[]{String.class}, void.class, new Class<?>[0]);
+    SummarisedInvocationHistory history = new SummarisedInvocationHistory();
+
+    public void testDescribesNothingIfNoInvocationsHaveBeenRecorded() {
+        assertEquals(" nothing!", asString(history));
+    }
+
+    public void testCountsEqualConsecutiveInvocations() {
+        history.record(new Invocation("mock", poll, "a"));
+        history.record(new Invocation("mock", poll, "a"));
+        history.record(new Invocation("mock", poll, "a"));
+        history.record(new Invocation("mock", poll, "b"));
+        history.record(new Invocation("mock", poll, "a"));
+        history.record(new Invocation("mock", poll, "a"));
+
+        assertEquals("\n  mock.poll(\"a\") (3 times in a row)"
+                     + "\n  mock.poll(\"b\")"
+                     + "\n  mock.poll(\"a\") (2 times in a row)\n",
+                     asString(history));
+    }
+
+    public void testGroupsTheDigitsOfLargeCounts() {
+        for (int i = 0; i < 1234; i++) {
+            history.record(new Invocation("mock", poll, "a"));
+        }
+
+        assertEquals("\n  mock.poll(\"a\") (1,234 times in a row)\n", asString(history));
+    }
+
+    public void testDoesNotCountInvocationsOfDifferentObjectsTogether() {
+        history.record(new Invocation("mock", poll, "a"));
+        history.record(new Invocation(new StringBuilder("mock"), poll, "a"));
+
+        assertEquals("\n  mock.poll(\"a\")\n  mock.poll(\"a\")\n", asString(history));
+    }
+}
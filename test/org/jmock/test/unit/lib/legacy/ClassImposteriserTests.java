@@ -18,6 +18,8 @@ import java.net.URLClassLoader;
 import java.util.Date;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -179,6 +181,25 @@ public class ClassImposteriserTests {
         imposteriser.imposterise(new VoidAction(), Object.class, AnInterface.class);
     }
 
+    @Test
+    public void reusesTheSameProxyClassForImpostersOfTheSameTypes() {
+        AnInnerClass imposter1 = imposteriser.imposterise(new ReturnValueAction("imposter1"), AnInnerClass.class);
+        AnInnerClass imposter2 = imposteriser.imposterise(new ReturnValueAction("imposter2"), AnInnerClass.class);
+        
+        assertSame(imposter1.getClass(), imposter2.getClass());
+        assertEquals("imposter1", imposter1.foo());
+        assertEquals("imposter2", imposter2.foo());
+    }
+    
+    @Test
+    public void generatesDifferentProxyClassesForImpostersWithDifferentAncilliaryTypes() {
+        Object imposter = imposteriser.imposterise(action, AnInnerClass.class);
+        Object imposterWithAncilliaryType = imposteriser.imposterise(action, AnInnerClass.class, AnInterface.class);
+        
+        assertNotSame(imposter.getClass(), imposterWithAncilliaryType.getClass());
+        assertTrue(imposterWithAncilliaryType instanceof AnInterface);
+    }
+    
     private Object invokeMethod(Object object, Method method, Object... args) throws IllegalAccessException, InvocationTargetException {
         method.setAccessible(true);
         return method.invoke(object, args);
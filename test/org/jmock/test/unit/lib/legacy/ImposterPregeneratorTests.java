@@ -0,0 +1,120 @@
+package org.jmock.test.unit.lib.legacy;
+
+import static java.lang.Thread.currentThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+
+import org.jmock.api.Imposteriser;
+import org.jmock.lib.action.ReturnValueAction;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.jmock.lib.legacy.ImposterPregenerator;
+
+public class ImposterPregeneratorTests extends TestCase {
+    public interface AnInterface {
+        String foo();
+    }
+
+    public static class AClass {
+        public String foo() {return "original result";}
+    }
+
+    public static class AClassWithAPackagePrivateMethod {
+        String foo() {return "original result";}
+    }
+
+    Imposteriser imposteriser = ClassImposteriser.INSTANCE;
+    ImposterPregenerator pregenerator = new ImposterPregenerator();
+    File jarFile;
+
+    @Override
+    public void setUp() throws IOException {
+        jarFile = File.createTempFile("imposters", ".jar");
+    }
+
+    @Override
+    public void tearDown() {
+        jarFile.delete();
+    }
+
+    public void testGeneratesProxyClassesThatTheClassImposteriserLoadsFromTheClasspath() throws IOException {
+        pregenerator.addMockedType(AnInterface.class);
+        pregenerator.addMockedType(AClass.class);
+        pregenerator.writeJar(jarFile);
+
+        ClassLoader pregeneratedLoader = withJarFileOnContextClassPath();
+        try {
+            AnInterface anInterface = imposteriser.imposterise(new ReturnValueAction("result"), AnInterface.class);
+            AClass aClass = imposteriser.imposterise(new ReturnValueAction("result"), AClass.class);
+
+            assertSame(pregeneratedLoader, anInterface.getClass().getClassLoader());
+            assertEquals("result", anInterface.foo());
+            assertSame(pregeneratedLoader, aClass.getClass().getClassLoader());
+            assertEquals("result", aClass.foo());
+        }
+        finally {
+            currentThread().setContextClassLoader(pregeneratedLoader.getParent());
+        }
+    }
+
+    public void testGeneratesProxyClassesForTheTypesThatAMockeryImposterises() {
+        pregenerator.addMockedType(AnInterface.class);
+
+        assertEquals("mock objects and expectation capturers", 2, pregenerator.getProxyClassCount());
+    }
+
+    public void testDoesNotGenerateProxyClassesForTypesThatCannotBeImposterised() {
+        pregenerator.addMockedType(String.class);
+
+        assertEquals(0, pregenerator.getProxyClassCount());
+    }
+
+    public void testDoesNotGenerateProxyClassesInSystemPackages() {
+        pregenerator.addMockedType(Runnable.class);
+
+        assertEquals(0, pregenerator.getProxyClassCount());
+    }
+
+    public void testIgnoresPregeneratedProxyClassesThatCannotOverridePackagePrivateMethods() throws IOException {
+        pregenerator.addMockedType(AClassWithAPackagePrivateMethod.class);
+        pregenerator.writeJar(jarFile);
+
+        ClassLoader pregeneratedLoader = withJarFileOnContextClassPath();
+        try {
+            AClassWithAPackagePrivateMethod imposter =
+                imposteriser.imposterise(new ReturnValueAction("result"), AClassWithAPackagePrivateMethod.class);
+
+            assertNotSame(pregeneratedLoader, imposter.getClass().getClassLoader());
+            assertFalse("should not be pregenerated", imposter.getClass().getName().contains("$$PregeneratedByJMock$$"));
+        }
+        finally {
+            currentThread().setContextClassLoader(pregeneratedLoader.getParent());
+        }
+    }
+
+    public void testImposterisesTypesThatHaveNoPregeneratedProxyClass() throws IOException {
+        pregenerator.addProxyClass(AnInterface.class);
+        pregenerator.writeJar(jarFile);
+
+        ClassLoader pregeneratedLoader = withJarFileOnContextClassPath();
+        try {
+            Object imposter = imposteriser.imposterise(new ReturnValueAction("result"), AnInterface.class, Runnable.class);
+
+            assertNotSame(pregeneratedLoader, imposter.getClass().getClassLoader());
+            assertEquals("result", ((AnInterface)imposter).foo());
+        }
+        finally {
+            currentThread().setContextClassLoader(pregeneratedLoader.getParent());
+        }
+    }
+
+    private ClassLoader withJarFileOnContextClassPath() throws IOException {
+        ClassLoader loader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, currentThread().getContextClassLoader());
+        currentThread().setContextClassLoader(loader);
+        return loader;
+    }
+}
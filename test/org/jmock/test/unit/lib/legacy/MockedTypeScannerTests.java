@@ -0,0 +1,66 @@
+package org.jmock.test.unit.lib.legacy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.jmock.Mockery;
+import org.jmock.auto.Mock;
+import org.jmock.lib.legacy.MockedTypeScanner;
+
+public class MockedTypeScannerTests extends TestCase {
+    public interface MockedByAnnotation {}
+    public interface MockedByCall {}
+    public interface MockedByNamedCall {}
+    public interface NotMocked {}
+
+    @SuppressWarnings("unused")
+    public static class ExampleTest {
+        Mockery context = new Mockery();
+
+        @Mock MockedByAnnotation annotated;
+        NotMocked notAnnotated;
+
+        public void useMocks() {
+            context.mock(MockedByCall.class);
+            context.mock(MockedByNamedCall.class, "named");
+            context.mock(Date.class);
+            doNotMock(NotMocked.class);
+        }
+
+        private void doNotMock(Class<?> type) {}
+    }
+
+    MockedTypeScanner scanner = new MockedTypeScanner();
+
+    public void testFindsTypesOfAnnotatedFieldsAndClassLiteralsPassedToMockMethods() throws IOException {
+        scan(ExampleTest.class);
+
+        assertEquals(new TreeSet<String>(Arrays.asList(Date.class.getName(),
+                                                       MockedByAnnotation.class.getName(),
+                                                       MockedByCall.class.getName(),
+                                                       MockedByNamedCall.class.getName())),
+                     scanner.getMockedTypeNames());
+    }
+
+    public void testFindsNothingInClassesThatDoNotUseMocks() throws IOException {
+        scan(NotMocked.class);
+
+        assertTrue(scanner.getMockedTypeNames().isEmpty());
+    }
+
+    private void scan(Class<?> type) throws IOException {
+        final InputStream classFile = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class");
+        try {
+            scanner.scan(classFile);
+        }
+        finally {
+            classFile.close();
+        }
+    }
+}
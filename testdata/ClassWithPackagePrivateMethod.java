@@ -0,0 +1,10 @@
+
+public class ClassWithPackagePrivateMethod {
+    String packagePrivateMethod() {
+        return "real";
+    }
+    
+    public final String callPackagePrivateMethod() {
+        return packagePrivateMethod();
+    }
+}